@@ -0,0 +1,71 @@
+package com.stegocam.benchmarks;
+
+import com.stegocam.stego.PayloadHeader;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Deterministic fixtures shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    private static final long SEED = 0x5EED5EEDL;
+
+    private BenchmarkData() {
+        // Utility class
+    }
+
+    /**
+     * Map a short type name (as used in {@code @Param}) to a BufferedImage type.
+     */
+    static int imageType(String name) {
+        return switch (name) {
+            case "INT_RGB" -> BufferedImage.TYPE_INT_RGB;
+            case "INT_ARGB" -> BufferedImage.TYPE_INT_ARGB;
+            case "3BYTE_BGR" -> BufferedImage.TYPE_3BYTE_BGR;
+            case "4BYTE_ABGR" -> BufferedImage.TYPE_4BYTE_ABGR;
+            default -> throw new IllegalArgumentException("Unknown image type: " + name);
+        };
+    }
+
+    /**
+     * A cover filled with noise, so the encoders cannot shortcut flat regions.
+     */
+    static BufferedImage image(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(SEED);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = 0xFF000000 | random.nextInt(0x1000000);
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+
+    static byte[] payload(int length) {
+        byte[] payload = new byte[length];
+        new Random(SEED).nextBytes(payload);
+        return payload;
+    }
+
+    static String text(int length) {
+        byte[] text = new byte[length];
+        Random random = new Random(SEED);
+        for (int i = 0; i < length; i++) {
+            text[i] = (byte) (' ' + random.nextInt(95));
+        }
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Largest message that fits the cover next to the payload header and trailer.
+     */
+    static int capacityBytes(int width, int height, int lsbBits) {
+        long bytes = (long) width * height * 3 * lsbBits / 8 - PayloadHeader.framedLength(0);
+        return (int) Math.min(Integer.MAX_VALUE - 8, bytes);
+    }
+}
@@ -0,0 +1,74 @@
+package com.stegocam.benchmarks;
+
+import com.stegocam.io.ImageHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode and encode cost of the lossless output formats.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageHandlerBenchmark {
+
+    @Param({"1024", "4096"})
+    public int imageSize;
+
+    @Param({"png", "bmp"})
+    public String format;
+
+    private final ImageHandler imageHandler = new ImageHandler();
+    private Path directory;
+    private String inputPath;
+    private String outputPath;
+    private BufferedImage image;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("stegocam-bench");
+        inputPath = directory.resolve("cover." + format).toString();
+        outputPath = directory.resolve("output." + format).toString();
+        image = BenchmarkData.image(imageSize, imageSize, BufferedImage.TYPE_3BYTE_BGR);
+        if (!imageHandler.saveImage(image, inputPath)) {
+            throw new IllegalStateException("Unable to write benchmark fixture " + inputPath);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(inputPath));
+        Files.deleteIfExists(Path.of(outputPath));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public BufferedImage loadImage() {
+        return imageHandler.loadImage(inputPath);
+    }
+
+    @Benchmark
+    public boolean saveImage() {
+        return imageHandler.saveImage(image, outputPath);
+    }
+}
@@ -0,0 +1,64 @@
+package com.stegocam.benchmarks;
+
+import com.stegocam.crypto.MessageEncryption;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of encrypting and decrypting a short message at
+ * several PBKDF2 iteration counts, where key derivation is nearly all of the
+ * cost. Sample mode reports percentiles, to weigh each setting against a
+ * latency budget alongside {@link MessageEncryption#calibrateIterations}.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyDerivationBenchmark {
+
+    private static final String PASSWORD = "benchmark-password";
+
+    @Param({"10000", "65536", "200000", "600000"})
+    public int iterations;
+
+    private byte[] plaintext;
+    private byte[] encrypted;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MessageEncryption.setIterationCount(iterations);
+        plaintext = BenchmarkData.text(64).getBytes(StandardCharsets.UTF_8);
+        encrypted = MessageEncryption.encryptBytes(plaintext, PASSWORD);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MessageEncryption.setIterationCount(MessageEncryption.DEFAULT_ITERATIONS);
+    }
+
+    @Benchmark
+    public byte[] encryptBytes() {
+        return MessageEncryption.encryptBytes(plaintext, PASSWORD);
+    }
+
+    @Benchmark
+    public byte[] decryptBytes() {
+        return MessageEncryption.decryptBytes(encrypted, PASSWORD);
+    }
+}
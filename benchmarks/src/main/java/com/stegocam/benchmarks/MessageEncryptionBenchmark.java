@@ -0,0 +1,83 @@
+package com.stegocam.benchmarks;
+
+import com.stegocam.crypto.EncryptionSession;
+import com.stegocam.crypto.MessageEncryption;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encryption and decryption latency, key derivation included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageEncryptionBenchmark {
+
+    private static final String PASSWORD = "benchmark-password";
+
+    @Param({"64", "4096", "1048576"})
+    public int messageLength;
+
+    private String message;
+    private String encrypted;
+    private byte[] plaintext;
+    private byte[] encryptedBytes;
+    private EncryptionSession session;
+    private byte[] sessionBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        message = BenchmarkData.text(messageLength);
+        encrypted = MessageEncryption.encrypt(message, PASSWORD);
+        plaintext = message.getBytes(StandardCharsets.UTF_8);
+        encryptedBytes = MessageEncryption.encryptBytes(plaintext, PASSWORD);
+        session = EncryptionSession.open(PASSWORD);
+        sessionBytes = session.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return MessageEncryption.encrypt(message, PASSWORD);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return MessageEncryption.decrypt(encrypted, PASSWORD);
+    }
+
+    @Benchmark
+    public byte[] encryptBytes() {
+        return MessageEncryption.encryptBytes(plaintext, PASSWORD);
+    }
+
+    @Benchmark
+    public byte[] decryptBytes() {
+        return MessageEncryption.decryptBytes(encryptedBytes, PASSWORD);
+    }
+
+    @Benchmark
+    public byte[] sessionEncrypt() {
+        return session.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public byte[] sessionDecrypt() {
+        return session.decrypt(sessionBytes);
+    }
+}
@@ -0,0 +1,77 @@
+package com.stegocam.benchmarks;
+
+import com.stegocam.controller.StegoController;
+import com.stegocam.io.ImageHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end file workflows as driven by the GUI: load, embed and save, then
+ * load and extract.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StegoControllerBenchmark {
+
+    @Param({"1024", "4096"})
+    public int imageSize;
+
+    @Param({"64", "65536"})
+    public int messageLength;
+
+    private final StegoController controller = new StegoController();
+    private Path directory;
+    private String coverPath;
+    private String stegoPath;
+    private String message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("stegocam-bench");
+        coverPath = directory.resolve("cover.png").toString();
+        stegoPath = directory.resolve("stego.png").toString();
+        message = BenchmarkData.text(messageLength);
+        BufferedImage cover = BenchmarkData.image(imageSize, imageSize, BufferedImage.TYPE_3BYTE_BGR);
+        if (!new ImageHandler().saveImage(cover, coverPath) || !controller.embedMessage(coverPath, stegoPath, message)) {
+            throw new IllegalStateException("Unable to prepare benchmark fixtures in " + directory);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(coverPath));
+        Files.deleteIfExists(Path.of(stegoPath));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public boolean embedMessage() {
+        return controller.embedMessage(coverPath, stegoPath, message);
+    }
+
+    @Benchmark
+    public String extractMessage() {
+        return controller.extractMessage(stegoPath);
+    }
+}
@@ -0,0 +1,78 @@
+package com.stegocam.benchmarks;
+
+import com.stegocam.stego.EngineContext;
+import com.stegocam.stego.StegoEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw engine throughput: embedding, extraction and the bit conversion helper.
+ * Payloads larger than the cover can hold are clamped to its capacity.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StegoEngineBenchmark {
+
+    @Param({"1024", "4096"})
+    public int imageSize;
+
+    @Param({"INT_RGB", "INT_ARGB", "3BYTE_BGR", "4BYTE_ABGR"})
+    public String imageType;
+
+    @Param({"1", "2", "4"})
+    public int lsbBits;
+
+    @Param({"1024", "1048576"})
+    public int payloadBytes;
+
+    private StegoEngine engine;
+    private final EngineContext context = new EngineContext();
+    private BufferedImage cover;
+    private BufferedImage stegoImage;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new StegoEngine(lsbBits);
+        cover = BenchmarkData.image(imageSize, imageSize, BenchmarkData.imageType(imageType));
+        payload = BenchmarkData.payload(Math.min(payloadBytes, BenchmarkData.capacityBytes(imageSize, imageSize, lsbBits)));
+        stegoImage = engine.embedMessage(cover, payload);
+    }
+
+    @Benchmark
+    public BufferedImage embedMessage() {
+        return engine.embedMessage(cover, payload);
+    }
+
+    @Benchmark
+    public BufferedImage embedMessageWithContext() {
+        return engine.embedMessage(cover, payload, context);
+    }
+
+    @Benchmark
+    public byte[] extractMessage() {
+        return engine.extractMessage(stegoImage);
+    }
+
+    @Benchmark
+    public boolean[] bytesToBits() {
+        return engine.bytesToBits(payload);
+    }
+}
@@ -14,6 +14,11 @@ public class App extends Application {
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        mainUI.shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -1,5 +1,7 @@
 package com.stegocam;
 
+import com.stegocam.stego.EngineContext;
+import com.stegocam.stego.PayloadHeader;
 import com.stegocam.stego.StegoEngine;
 
 import javax.imageio.ImageIO;
@@ -35,7 +37,7 @@ public final class Steganography {
         }
         String safeText = text == null ? "" : text;
         byte[] payload = safeText.getBytes(StandardCharsets.UTF_8);
-        return ENGINE.embedMessage(image, payload);
+        return ENGINE.embedMessage(image, payload, PayloadHeader.TYPE_TEXT, new EngineContext());
     }
 
     /**
@@ -67,7 +69,7 @@ public final class Steganography {
         }
 
         byte[] payload = serialiseImage(secretImage);
-        return ENGINE.embedMessage(coverImage, payload);
+        return ENGINE.embedMessage(coverImage, payload, PayloadHeader.TYPE_IMAGE, new EngineContext());
     }
 
     /**
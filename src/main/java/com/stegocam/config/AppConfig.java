@@ -14,10 +14,30 @@ public class AppConfig {
     public static final String CRYPTO_ALGORITHM = "AES/GCM/NoPadding";
     public static final int KEY_SIZE = 256;
     public static final int IV_SIZE = 12;
+    public static final int ENCRYPTION_CHUNK_SIZE = 64 * 1024; // plaintext bytes per chunk of large encrypted payloads
+    public static final int KEY_CACHE_MAX_ENTRIES = 16; // derived keys kept when the key cache is enabled
+    public static final long KEY_CACHE_TTL_SECONDS = 300;
+    
+    // Compression settings (applied before encryption, only when it shrinks the payload)
+    public static final int COMPRESSION_LEVEL = 6;
+    public static final int COMPRESSION_DICTIONARY_LIMIT = 1024; // shorter payloads use the preset dictionary
+    public static final int MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024;
     
     // Steganography settings
     public static final int LSB_BITS = 2;
     public static final int MAX_MESSAGE_SIZE = 1024;
+    public static final long PARALLEL_THRESHOLD_PIXELS = 1L << 20; // payloads spanning fewer pixels stay serial
+    public static final long BAND_BUFFER_BYTES = 64L * 1024 * 1024; // decoded rows held at once by banded embedding
+    
+    // Preview settings
+    public static final int THUMBNAIL_SIZE = 96;
+    public static final String THUMBNAIL_CACHE_DIR = ".stegocam/thumbnails"; // relative to user.home
+    public static final int THUMBNAIL_CACHE_MAX_ENTRIES = 500;
+    public static final long THUMBNAIL_CACHE_MAX_AGE_DAYS = 30; // entries unused for longer are deleted
+    
+    // Background work settings
+    public static final int WORKER_THREADS = 2;
+    public static final int WORKER_QUEUE_CAPACITY = 8;
     
     // Application settings
     public static final String APP_NAME = "StegoCam";
@@ -1,14 +1,37 @@
 package com.stegocam.controller;
 
 import com.stegocam.Steganography;
+import com.stegocam.config.AppConfig;
+import com.stegocam.crypto.ChunkedEncryption;
+import com.stegocam.crypto.DecryptionException;
+import com.stegocam.crypto.EncryptionSession;
+import com.stegocam.crypto.MessageEncryption;
 import com.stegocam.io.ImageHandler;
+import com.stegocam.io.ImageInfo;
+import com.stegocam.stego.BandEmbedder;
+import com.stegocam.stego.EngineContext;
+import com.stegocam.stego.NoMessageFoundException;
+import com.stegocam.stego.Payload;
+import com.stegocam.stego.PayloadHeader;
+import com.stegocam.stego.ProgressListener;
 import com.stegocam.stego.StegoEngine;
+import com.stegocam.util.ImageUtil;
 import com.stegocam.util.LoggerUtil;
+import com.stegocam.util.PayloadCompression;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.function.UnaryOperator;
 
 /**
  * High-level application controller for steganography workflows. Bridges the
@@ -29,6 +52,15 @@ public class StegoController {
     }
 
     public boolean embedMessage(String inputPath, String outputPath, String message) {
+        byte[] payload = message == null ? new byte[0] : message.getBytes(StandardCharsets.UTF_8);
+        return embedPayload(inputPath, outputPath, payload);
+    }
+
+    /**
+     * Embed raw bytes, such as a binary ciphertext, into the cover at
+     * {@code inputPath} and save the result to {@code outputPath}.
+     */
+    public boolean embedPayload(String inputPath, String outputPath, byte[] payload) {
         LoggerUtil.startOperation("Embed message");
         if (isBlank(inputPath) || isBlank(outputPath)) {
             LoggerUtil.warn("Input and output paths must be provided.");
@@ -39,6 +71,12 @@ public class StegoController {
         String trimmedInput = inputPath.trim();
         String trimmedOutput = outputPath.trim();
 
+        if (!canEmbed(trimmedInput, payload == null ? 0 : payload.length)) {
+            LoggerUtil.warn("Cover image is missing or too small for the message: " + inputPath);
+            LoggerUtil.completeOperation("Embed message", false);
+            return false;
+        }
+
         BufferedImage coverImage = imageHandler.loadImage(trimmedInput);
         if (coverImage == null) {
             LoggerUtil.warn("Unable to load input image: " + inputPath);
@@ -46,10 +84,82 @@ public class StegoController {
             return false;
         }
 
-        byte[] payload = message == null ? new byte[0] : message.getBytes(StandardCharsets.UTF_8);
+        return embedAndSave(coverImage, trimmedOutput, unflagged(payload), null, false);
+    }
 
+    /**
+     * Whether the cover at {@code coverPath} is large enough for a payload of
+     * {@code payloadBytes} bytes. Only the image header is read.
+     */
+    public boolean canEmbed(String coverPath, long payloadBytes) {
+        if (isBlank(coverPath) || payloadBytes < 0) {
+            return false;
+        }
+        ImageInfo info = imageHandler.probeImage(coverPath.trim());
+        return info != null
+            && PayloadHeader.framedLength(payloadBytes) <= stegoEngine.getCapacityBytes(info.width(), info.height());
+    }
+
+    /**
+     * Embed raw bytes into an already decoded cover and save the result to
+     * {@code outputPath}, reporting engine progress to {@code listener} when
+     * it is not null. The cover itself is left unchanged.
+     */
+    public boolean embedPayload(BufferedImage coverImage, String outputPath, byte[] payload, ProgressListener listener) {
+        return embedPayload(coverImage, outputPath, unflagged(payload), listener);
+    }
+
+    /**
+     * Embed like {@link #embedPayload(BufferedImage, String, byte[], ProgressListener)},
+     * recording the payload's flags in its header.
+     */
+    public boolean embedPayload(BufferedImage coverImage, String outputPath, Payload payload, ProgressListener listener) {
+        LoggerUtil.startOperation("Embed message");
+        if (coverImage == null || isBlank(outputPath)) {
+            LoggerUtil.warn("Cover image and output path must be provided.");
+            LoggerUtil.completeOperation("Embed message", false);
+            return false;
+        }
+
+        return embedAndSave(coverImage, outputPath.trim(), payload, listener, false);
+    }
+
+    /**
+     * Embed raw bytes directly into {@code image}, overwriting its pixels, and
+     * save it to {@code outputPath}. Useful when the caller already owns a
+     * copy of the cover, e.g. one backing a live preview.
+     */
+    public boolean embedPayloadInPlace(BufferedImage image, String outputPath, byte[] payload, ProgressListener listener) {
+        return embedPayloadInPlace(image, outputPath, unflagged(payload), listener);
+    }
+
+    /**
+     * Embed in place, recording the payload's flags in its header.
+     */
+    public boolean embedPayloadInPlace(BufferedImage image, String outputPath, Payload payload, ProgressListener listener) {
+        LoggerUtil.startOperation("Embed message");
+        if (image == null || isBlank(outputPath)) {
+            LoggerUtil.warn("Cover image and output path must be provided.");
+            LoggerUtil.completeOperation("Embed message", false);
+            return false;
+        }
+
+        return embedAndSave(image, outputPath.trim(), payload, listener, true);
+    }
+
+    private boolean embedAndSave(BufferedImage coverImage, String trimmedOutput, Payload payload,
+                                 ProgressListener listener, boolean inPlace) {
         try {
-            BufferedImage stegoImage = stegoEngine.embedMessage(coverImage, payload);
+            EngineContext context = new EngineContext();
+            context.setProgressListener(listener);
+            Payload message = payload == null ? unflagged(null) : payload;
+            BufferedImage stegoImage;
+            if (inPlace) {
+                stegoEngine.embedMessageInPlace(coverImage, message.data(), message.flags(), context);
+                stegoImage = coverImage;
+            } else {
+                stegoImage = stegoEngine.embedMessage(coverImage, message.data(), message.flags(), context);
+            }
             ensureParentDirectory(trimmedOutput);
             boolean saved = imageHandler.saveImage(stegoImage, trimmedOutput);
             LoggerUtil.completeOperation("Embed message", saved);
@@ -65,7 +175,134 @@ public class StegoController {
         }
     }
 
+    /**
+     * Embed {@code payload} into a cover too large to decode whole. The cover
+     * is read, embedded into and written out as a PNG in bands of rows sized
+     * by {@link AppConfig#BAND_BUFFER_BYTES}, so heap use follows the band
+     * rather than the image.
+     */
+    public boolean embedPayloadInBands(String inputPath, String outputPath, byte[] payload) {
+        LoggerUtil.startOperation("Embed message");
+        if (isBlank(inputPath) || isBlank(outputPath)) {
+            LoggerUtil.warn("Input and output paths must be provided.");
+            LoggerUtil.completeOperation("Embed message", false);
+            return false;
+        }
+
+        String trimmedInput = inputPath.trim();
+        String trimmedOutput = outputPath.trim();
+        if (!trimmedOutput.toLowerCase(Locale.ROOT).endsWith(".png")) {
+            LoggerUtil.warn("Banded embedding writes PNG output: " + outputPath);
+            LoggerUtil.completeOperation("Embed message", false);
+            return false;
+        }
+        ImageInfo info = imageHandler.probeImage(trimmedInput);
+        if (info == null || info.colourType() != ImageInfo.ColourType.RGB || info.bitDepth() != 8) {
+            LoggerUtil.warn("Banded embedding needs an 8-bit RGB cover: " + inputPath);
+            LoggerUtil.completeOperation("Embed message", false);
+            return false;
+        }
+
+        try {
+            byte[] message = payload == null ? new byte[0] : payload;
+            BandEmbedder embedder = stegoEngine.embedInBands(info.width(), info.height(), message,
+                PayloadHeader.TYPE_BYTES);
+            long bandRows = AppConfig.BAND_BUFFER_BYTES / ((long) info.width() * Integer.BYTES);
+            int rows = (int) Math.max(1, Math.min(info.height(), bandRows));
+            ensureParentDirectory(trimmedOutput);
+            boolean saved = imageHandler.transcodeInBands(trimmedInput, trimmedOutput, rows, embedder::embed)
+                && embedder.isComplete();
+            LoggerUtil.completeOperation("Embed message", saved);
+            return saved;
+        } catch (IllegalArgumentException ex) {
+            LoggerUtil.warn("Failed to embed message: " + ex.getMessage());
+            LoggerUtil.completeOperation("Embed message", false);
+            return false;
+        } catch (Exception ex) {
+            LoggerUtil.error("Unexpected error during embedding", ex);
+            LoggerUtil.completeOperation("Embed message", false);
+            return false;
+        }
+    }
+
+    /**
+     * Embed the file at {@code secretPath} into the cover, streaming it from
+     * disk so it never has to fit in memory alongside the image.
+     */
+    public boolean embedFile(String coverPath, String secretPath, String outputPath) {
+        return embedFile(coverPath, secretPath, outputPath, null);
+    }
+
+    /**
+     * Embed a file like {@link #embedFile(String, String, String)}, encrypting
+     * it in chunks on the way in when {@code password} is not null.
+     */
+    public boolean embedFile(String coverPath, String secretPath, String outputPath, String password) {
+        LoggerUtil.startOperation("Embed file");
+        if (isBlank(coverPath) || isBlank(secretPath) || isBlank(outputPath)) {
+            LoggerUtil.warn("Cover, secret file and output paths must be provided.");
+            LoggerUtil.completeOperation("Embed file", false);
+            return false;
+        }
+
+        String trimmedCover = coverPath.trim();
+        String trimmedOutput = outputPath.trim();
+        try (FileChannel secret = FileChannel.open(Path.of(secretPath.trim()), StandardOpenOption.READ)) {
+            long size = secret.size();
+            boolean encrypt = password != null;
+            long length = encrypt ? ChunkedEncryption.encryptedLength(size) : size;
+            if (!canEmbed(trimmedCover, length)) {
+                LoggerUtil.warn("Cover image is missing or too small for the file: " + coverPath);
+                LoggerUtil.completeOperation("Embed file", false);
+                return false;
+            }
+            BufferedImage loaded = imageHandler.loadImage(trimmedCover);
+            if (loaded == null) {
+                LoggerUtil.warn("Unable to load input image: " + coverPath);
+                LoggerUtil.completeOperation("Embed file", false);
+                return false;
+            }
+            // Streaming writes in place, so gray, indexed and premultiplied covers are converted first
+            BufferedImage coverImage = ImageUtil.toRgb(loaded);
+            ReadableByteChannel input = encrypt ? ChunkedEncryption.encryptingChannel(secret, size, password) : secret;
+            int flags = PayloadHeader.TYPE_BYTES | (encrypt ? PayloadHeader.FLAG_ENCRYPTED : 0);
+            stegoEngine.embedStreamInPlace(coverImage, input, length, flags, new EngineContext());
+            ensureParentDirectory(trimmedOutput);
+            boolean saved = imageHandler.saveImage(coverImage, trimmedOutput);
+            LoggerUtil.completeOperation("Embed file", saved);
+            return saved;
+        } catch (IllegalArgumentException | IOException ex) {
+            LoggerUtil.warn("Failed to embed file: " + ex.getMessage());
+            LoggerUtil.completeOperation("Embed file", false);
+            return false;
+        } catch (Exception ex) {
+            LoggerUtil.error("Unexpected error during embedding", ex);
+            LoggerUtil.completeOperation("Embed file", false);
+            return false;
+        }
+    }
+
     public String extractMessage(String inputPath) {
+        byte[] data = extractPayload(inputPath);
+        return data == null ? null : new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Extract the raw embedded bytes from the image at {@code inputPath}.
+     * Returns an empty array when the image carries no message and null when
+     * extraction fails.
+     */
+    public byte[] extractPayload(String inputPath) {
+        Payload payload = readPayload(inputPath);
+        return payload == null ? null : payload.data();
+    }
+
+    /**
+     * Extract like {@link #extractPayload(String)}, keeping the flags stored
+     * in the payload header. Returns an empty, unflagged payload when the
+     * image carries no message and null when extraction fails.
+     */
+    public Payload readPayload(String inputPath) {
         LoggerUtil.startOperation("Extract message");
         if (isBlank(inputPath)) {
             LoggerUtil.warn("Input path must be provided.");
@@ -82,16 +319,14 @@ public class StegoController {
         }
 
         try {
-            byte[] data = stegoEngine.extractMessage(stegoImage);
-            String message = new String(data, StandardCharsets.UTF_8);
+            Payload payload = stegoEngine.extractPayload(stegoImage, new EngineContext());
             LoggerUtil.completeOperation("Extract message", true);
-            return message;
+            return payload;
+        } catch (NoMessageFoundException ex) {
+            LoggerUtil.warn("No embedded message detected in image: " + inputPath);
+            LoggerUtil.completeOperation("Extract message", true);
+            return unflagged(null);
         } catch (IllegalArgumentException ex) {
-            if (isNoMessageFound(ex)) {
-                LoggerUtil.warn("No embedded message detected in image: " + inputPath);
-                LoggerUtil.completeOperation("Extract message", true);
-                return "";
-            }
             LoggerUtil.warn("Extraction failed: " + ex.getMessage());
             LoggerUtil.completeOperation("Extract message", false);
             return null;
@@ -102,6 +337,68 @@ public class StegoController {
         }
     }
 
+    /**
+     * Prepare a secret for embedding: compress it when that makes it smaller,
+     * then encrypt it. The returned flags record both steps.
+     */
+    public Payload sealSecret(byte[] plaintext, String password) {
+        // Larger secrets are sealed in chunks so every core can take a share
+        return sealSecret(plaintext, compressed -> compressed.length > AppConfig.ENCRYPTION_CHUNK_SIZE
+            ? ChunkedEncryption.encrypt(compressed, password)
+            : MessageEncryption.encryptBytes(compressed, password));
+    }
+
+    /**
+     * Seal a secret like {@link #sealSecret(byte[], String)} under a key
+     * derived from {@code session}, skipping PBKDF2. Use one session for a
+     * run of secrets sharing a password.
+     */
+    public Payload sealSecret(byte[] plaintext, EncryptionSession session) {
+        Objects.requireNonNull(session, "session");
+        return sealSecret(plaintext, session::encrypt);
+    }
+
+    private Payload sealSecret(byte[] plaintext, UnaryOperator<byte[]> encryption) {
+        if (plaintext == null) {
+            throw new IllegalArgumentException("Secret cannot be null");
+        }
+        int flags = PayloadHeader.FLAG_ENCRYPTED;
+        byte[] compressed = PayloadCompression.compress(plaintext);
+        if (compressed != null) {
+            flags |= PayloadHeader.FLAG_COMPRESSED;
+            plaintext = compressed;
+        }
+        return new Payload(flags, encryption.apply(plaintext));
+    }
+
+    /**
+     * Reverse {@link #sealSecret}. Payloads from images without a header are
+     * assumed to be encrypted and uncompressed.
+     */
+    public byte[] openSecret(Payload payload, String password) {
+        return openSecret(payload, data -> MessageEncryption.decryptBytes(data, password));
+    }
+
+    /**
+     * Reverse {@link #sealSecret} with the session's password, reusing its
+     * master key for payloads it sealed.
+     */
+    public byte[] openSecret(Payload payload, EncryptionSession session) {
+        Objects.requireNonNull(session, "session");
+        return openSecret(payload, session::decrypt);
+    }
+
+    private byte[] openSecret(Payload payload, UnaryOperator<byte[]> decryption) {
+        if (payload == null) {
+            throw new IllegalArgumentException("Payload cannot be null");
+        }
+        byte[] plaintext = decryption.apply(payload.data());
+        if (payload.isCompressed()) {
+            return PayloadCompression.decompress(plaintext, AppConfig.MAX_DECOMPRESSED_SIZE);
+        }
+        return plaintext;
+    }
+
     public boolean embedImage(String coverImagePath, String secretImagePath, String outputPath) {
         LoggerUtil.startOperation("Embed image");
         if (isBlank(coverImagePath) || isBlank(secretImagePath) || isBlank(outputPath)) {
@@ -186,17 +483,90 @@ public class StegoController {
         }
     }
 
-    private boolean isBlank(String value) {
-        return value == null || value.trim().isEmpty();
+    /**
+     * Extract the embedded message straight into the file at
+     * {@code outputPath}. Nothing is left behind if extraction fails.
+     */
+    public boolean extractToFile(String inputPath, String outputPath) {
+        return extractToFile(inputPath, outputPath, null);
     }
 
-    private boolean isNoMessageFound(IllegalArgumentException ex) {
-        String message = ex.getMessage();
-        if (message == null) {
+    /**
+     * Extract like {@link #extractToFile(String, String)}, decrypting a file
+     * embedded by {@link #embedFile(String, String, String, String)} on the
+     * way out when {@code password} is not null.
+     */
+    public boolean extractToFile(String inputPath, String outputPath, String password) {
+        LoggerUtil.startOperation("Extract file");
+        if (isBlank(inputPath) || isBlank(outputPath)) {
+            LoggerUtil.warn("Input and output paths must be provided.");
+            LoggerUtil.completeOperation("Extract file", false);
+            return false;
+        }
+
+        BufferedImage stegoImage = imageHandler.loadImage(inputPath.trim());
+        if (stegoImage == null) {
+            LoggerUtil.warn("Unable to load image for extraction: " + inputPath);
+            LoggerUtil.completeOperation("Extract file", false);
+            return false;
+        }
+
+        PayloadHeader header = stegoEngine.readHeader(stegoImage);
+        boolean decrypt = password != null && header != null && header.isEncrypted();
+        if (decrypt && header.isCompressed()) {
+            LoggerUtil.warn("Compressed payloads cannot be decrypted to a file: " + inputPath);
+            LoggerUtil.completeOperation("Extract file", false);
+            return false;
+        }
+
+        String trimmedOutput = outputPath.trim();
+        Path output = Path.of(trimmedOutput);
+        try {
+            ensureParentDirectory(trimmedOutput);
+            try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                if (decrypt) {
+                    WritableByteChannel plaintext = ChunkedEncryption.decryptingChannel(channel, password);
+                    stegoEngine.extractStream(stegoImage, plaintext, new EngineContext());
+                    // Closing authenticates the final chunk
+                    plaintext.close();
+                } else {
+                    stegoEngine.extractStream(stegoImage, channel, new EngineContext());
+                }
+            }
+            LoggerUtil.completeOperation("Extract file", true);
+            return true;
+        } catch (IllegalArgumentException | IOException ex) {
+            LoggerUtil.warn("Extraction failed: " + ex.getMessage());
+            deleteQuietly(output);
+            LoggerUtil.completeOperation("Extract file", false);
+            return false;
+        } catch (DecryptionException ex) {
+            LoggerUtil.warn("Extraction failed: " + ex.getMessage());
+            deleteQuietly(output);
+            LoggerUtil.completeOperation("Extract file", false);
+            return false;
+        } catch (Exception ex) {
+            LoggerUtil.error("Unexpected error during extraction", ex);
+            deleteQuietly(output);
+            LoggerUtil.completeOperation("Extract file", false);
             return false;
         }
-        return message.contains("Embedded message length exceeds image capacity")
-            || message.contains("No embedded message length found")
-            || message.contains("Image ended before the embedded message was fully read");
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            LoggerUtil.warn("Unable to remove partial output: " + path);
+        }
+    }
+
+    private static Payload unflagged(byte[] data) {
+        return new Payload(0, data == null ? new byte[0] : data);
+    }
+
+    private boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
     }
 }
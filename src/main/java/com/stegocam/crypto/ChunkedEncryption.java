@@ -0,0 +1,543 @@
+package com.stegocam.crypto;
+
+import com.stegocam.config.AppConfig;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Segmented AES-256-GCM for large payloads. The plaintext is cut into chunks
+ * of {@link AppConfig#ENCRYPTION_CHUNK_SIZE} bytes that are sealed
+ * independently, so they can be encrypted and decrypted on several cores and
+ * streamed without holding the whole message. The layout is
+ * <pre>
+ *   FORMAT_GCM_CHUNKED (1) | [iterations (4)] | IV (12) | chunk size (4) | chunk 0 || tag | chunk 1 || tag | ...
+ * </pre>
+ * where the iteration count is present as described in {@link MessageEncryption}.
+ * Chunk {@code i} is sealed under the IV with {@code i} XORed into bytes 7 to
+ * 10 and, for the last chunk only, 1 XORed into byte 11. Every chunk also
+ * authenticates the header. Reordered, dropped or appended chunks therefore
+ * fail to decrypt, as does a message cut short at a chunk boundary.
+ */
+public class ChunkedEncryption {
+
+    /**
+     * Leading byte of the chunked format, next to {@link MessageEncryption#FORMAT_GCM}.
+     */
+    public static final byte FORMAT_GCM_CHUNKED = 0x02;
+    /**
+     * Header size without the key derivation fields.
+     */
+    public static final int HEADER_LENGTH = 1 + AppConfig.IV_SIZE + Integer.BYTES;
+
+    private static final int TAG_LENGTH = 16;
+    private static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    // Chunks sealed by one task before the pool splits the work further
+    private static final int CHUNKS_PER_TASK = 2;
+    // Plaintext bytes a streaming channel buffers at once, whatever the header's chunk size
+    private static final int WINDOW_BYTES = 4 * 1024 * 1024;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Cipher> CIPHERS = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(AppConfig.CRYPTO_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is unavailable", e);
+        }
+    });
+
+    private ChunkedEncryption() {
+        // Utility class
+    }
+
+    /**
+     * Size of the chunked output for a plaintext of the given length.
+     */
+    public static long encryptedLength(long plaintextLength) {
+        return encryptedLength(plaintextLength, AppConfig.ENCRYPTION_CHUNK_SIZE);
+    }
+
+    static long encryptedLength(long plaintextLength, int chunkSize) {
+        return encryptedLength(plaintextLength, chunkSize,
+            HEADER_LENGTH + MessageEncryption.kdfFieldLengthFor(MessageEncryption.iterationCount()));
+    }
+
+    private static long encryptedLength(long plaintextLength, int chunkSize, int headerLength) {
+        return headerLength + plaintextLength + chunkCount(plaintextLength, chunkSize) * TAG_LENGTH;
+    }
+
+    /**
+     * Encrypts {@code plaintext}, sealing its chunks in parallel.
+     */
+    public static byte[] encrypt(byte[] plaintext, String password) {
+        return encrypt(plaintext, password, AppConfig.ENCRYPTION_CHUNK_SIZE);
+    }
+
+    static byte[] encrypt(byte[] plaintext, String password, int chunkSize) {
+        Objects.requireNonNull(plaintext, "plaintext");
+        if (encryptedLength(plaintext.length, chunkSize) > MAX_ARRAY_LENGTH) {
+            throw new IllegalArgumentException("Message is too large to encrypt in memory; stream it instead");
+        }
+        Sealer sealer = Sealer.create(password, chunkSize);
+        int headerLength = sealer.header.length;
+        byte[] payload = new byte[(int) encryptedLength(plaintext.length, chunkSize, headerLength)];
+        System.arraycopy(sealer.header, 0, payload, 0, headerLength);
+        int chunks = (int) chunkCount(plaintext.length, chunkSize);
+        forEachChunk(chunks, chunk -> {
+            int from = chunk * chunkSize;
+            int count = Math.min(chunkSize, plaintext.length - from);
+            int to = headerLength + chunk * (chunkSize + TAG_LENGTH);
+            sealer.seal(chunk, chunk == chunks - 1, ByteBuffer.wrap(plaintext, from, count),
+                ByteBuffer.wrap(payload, to, count + TAG_LENGTH));
+        });
+        return payload;
+    }
+
+    /**
+     * Decrypts a payload produced by {@link #encrypt(byte[], String)} or
+     * {@link #encryptingChannel}, opening its chunks in parallel.
+     */
+    public static byte[] decrypt(byte[] payload, String password) {
+        Objects.requireNonNull(payload, "payload");
+        return decrypt(ByteBuffer.wrap(payload), password);
+    }
+
+    /**
+     * Decrypts the remaining bytes of {@code payload}, leaving its position unchanged.
+     */
+    public static byte[] decrypt(ByteBuffer payload, String password) {
+        Objects.requireNonNull(payload, "payload");
+        int headerLength = payload.hasRemaining() ? headerLength(payload.get(payload.position())) : HEADER_LENGTH;
+        if (payload.remaining() < headerLength) {
+            throw new DecryptionException("Decryption failed: Invalid encrypted message format");
+        }
+        Sealer sealer = Sealer.read(payload.slice(payload.position(), headerLength), password);
+        ByteBuffer body = payload.slice(payload.position() + headerLength, payload.remaining() - headerLength);
+        int sealedChunk = sealer.chunkSize + TAG_LENGTH;
+        int chunks = Math.max(1, (body.remaining() + sealedChunk - 1) / sealedChunk);
+        if (body.remaining() - (long) (chunks - 1) * sealedChunk < TAG_LENGTH) {
+            throw new DecryptionException("Decryption failed: Invalid encrypted message format");
+        }
+        byte[] plaintext = new byte[body.remaining() - chunks * TAG_LENGTH];
+        forEachChunk(chunks, chunk -> {
+            int from = chunk * sealedChunk;
+            int count = Math.min(sealedChunk, body.remaining() - from);
+            sealer.open(chunk, chunk == chunks - 1, body.slice(from, count),
+                ByteBuffer.wrap(plaintext, chunk * sealer.chunkSize, count - TAG_LENGTH));
+        });
+        return plaintext;
+    }
+
+    /**
+     * A channel of the chunked encryption of the next {@code length} bytes of
+     * {@code plaintext}, {@link #encryptedLength(long)} bytes in all. A few
+     * chunks are read and sealed in parallel at a time, so memory use does
+     * not grow with the message. Closing it closes {@code plaintext}.
+     */
+    public static ReadableByteChannel encryptingChannel(ReadableByteChannel plaintext, long length, String password) {
+        return encryptingChannel(plaintext, length, password, AppConfig.ENCRYPTION_CHUNK_SIZE);
+    }
+
+    static ReadableByteChannel encryptingChannel(ReadableByteChannel plaintext, long length, String password,
+                                                 int chunkSize) {
+        Objects.requireNonNull(plaintext, "plaintext");
+        if (length < 0) {
+            throw new IllegalArgumentException("Plaintext length cannot be negative");
+        }
+        return new EncryptingChannel(plaintext, length, Sealer.create(password, chunkSize));
+    }
+
+    /**
+     * A channel that decrypts the chunked ciphertext written to it into
+     * {@code plaintext}, a few chunks at a time in parallel. Each chunk is
+     * authenticated before it is passed on, but only {@link WritableByteChannel#close()}
+     * can tell whether the message was complete; if it throws, discard what
+     * was written. Closing it closes {@code plaintext}.
+     */
+    public static WritableByteChannel decryptingChannel(WritableByteChannel plaintext, String password) {
+        Objects.requireNonNull(plaintext, "plaintext");
+        MessageEncryption.requirePassword(password, "Decryption");
+        return new DecryptingChannel(plaintext, password);
+    }
+
+    static int headerLength(byte format) {
+        return HEADER_LENGTH + MessageEncryption.kdfFieldLength(format);
+    }
+
+    private static long chunkCount(long plaintextLength, int chunkSize) {
+        return Math.max(1, (plaintextLength + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Chunks held by a streaming channel at once: enough to keep the pool
+     * busy, but no more than fit in {@link #WINDOW_BYTES}.
+     */
+    private static int windowChunks(int chunkSize) {
+        int busy = Math.max(1, ForkJoinPool.getCommonPoolParallelism()) * CHUNKS_PER_TASK;
+        return Math.min(busy, Math.max(1, WINDOW_BYTES / chunkSize));
+    }
+
+    private static void forEachChunk(int chunks, ChunkAction action) {
+        if (chunks <= CHUNKS_PER_TASK) {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                action.process(chunk);
+            }
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new ChunkTask(0, chunks, action));
+    }
+
+    private static void transfer(ByteBuffer source, ByteBuffer destination) {
+        int count = Math.min(source.remaining(), destination.remaining());
+        destination.put(source.slice(source.position(), count));
+        source.position(source.position() + count);
+    }
+
+    /**
+     * The key, header and chunk size of one message.
+     */
+    private static final class Sealer {
+
+        final byte[] header;
+        final int chunkSize;
+        private final byte[] iv;
+        private final SecretKey key;
+        // Caches the key once a chunk opens, for payloads without a key check value
+        private final AtomicReference<Runnable> onVerified;
+
+        private Sealer(byte[] header, byte[] iv, int chunkSize, SecretKey key, Runnable onVerified) {
+            this.header = header;
+            this.iv = iv;
+            this.chunkSize = chunkSize;
+            this.key = key;
+            this.onVerified = new AtomicReference<>(onVerified);
+        }
+
+        static Sealer create(String password, int chunkSize) {
+            MessageEncryption.requirePassword(password, "Encryption");
+            int iterations = MessageEncryption.iterationCount();
+            byte[] iv = new byte[AppConfig.IV_SIZE];
+            RANDOM.nextBytes(iv);
+            SecretKey key = deriveKey(password, iv, iterations);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + MessageEncryption.kdfFieldLengthFor(iterations))
+                .put(MessageEncryption.formatByte(FORMAT_GCM_CHUNKED, iterations));
+            MessageEncryption.putKdfFields(header, iterations, key);
+            return new Sealer(header.put(iv).putInt(chunkSize).array(), iv, chunkSize, key, null);
+        }
+
+        /**
+         * Parse the header bytes of {@code header}, rejecting a wrong
+         * password by its key check value before any chunk is opened.
+         */
+        static Sealer read(ByteBuffer header, String password) {
+            MessageEncryption.requirePassword(password, "Decryption");
+            byte[] bytes = new byte[header.remaining()];
+            header.duplicate().get(bytes);
+            byte format = header.get();
+            if (!MessageEncryption.isFormat(format, FORMAT_GCM_CHUNKED)) {
+                throw new DecryptionException("Decryption failed: Invalid encrypted message format");
+            }
+            int iterations = MessageEncryption.readIterations(header, format);
+            byte[] keyCheck = MessageEncryption.readKeyCheck(header, format);
+            byte[] iv = new byte[AppConfig.IV_SIZE];
+            header.get(iv);
+            int chunkSize = header.getInt();
+            if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+                throw new DecryptionException("Decryption failed: Invalid chunk size " + chunkSize);
+            }
+            SecretKey key;
+            try {
+                key = MessageEncryption.lookupKey(password, iv, iterations);
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException("Key derivation failed: " + e.getMessage(), e);
+            }
+            MessageEncryption.verifyKeyCheck(keyCheck, key);
+            Runnable remember = () -> MessageEncryption.rememberKey(password, iv, iterations, key);
+            if (keyCheck != null) {
+                remember.run();
+                remember = null;
+            }
+            return new Sealer(bytes, iv, chunkSize, key, remember);
+        }
+
+        private static SecretKey deriveKey(String password, byte[] iv, int iterations) {
+            try {
+                return MessageEncryption.deriveKey(password, iv, iterations);
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException("Key derivation failed: " + e.getMessage(), e);
+            }
+        }
+
+        void seal(long chunk, boolean last, ByteBuffer plaintext, ByteBuffer ciphertext) {
+            try {
+                Cipher cipher = CIPHERS.get();
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce(chunk, last)));
+                cipher.updateAAD(header);
+                cipher.doFinal(plaintext, ciphertext);
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException("Encryption failed: " + e.getMessage(), e);
+            }
+        }
+
+        void open(long chunk, boolean last, ByteBuffer ciphertext, ByteBuffer plaintext) {
+            try {
+                Cipher cipher = CIPHERS.get();
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce(chunk, last)));
+                cipher.updateAAD(header);
+                cipher.doFinal(ciphertext, plaintext);
+                Runnable verified = onVerified.getAndSet(null);
+                if (verified != null) {
+                    verified.run();
+                }
+            } catch (GeneralSecurityException e) {
+                throw new DecryptionException("Decryption failed: " + e.getMessage(), e);
+            }
+        }
+
+        private byte[] nonce(long chunk, boolean last) {
+            if (chunk >>> 32 != 0) {
+                throw new IllegalArgumentException("Message has too many chunks");
+            }
+            byte[] nonce = iv.clone();
+            nonce[7] ^= (byte) (chunk >>> 24);
+            nonce[8] ^= (byte) (chunk >>> 16);
+            nonce[9] ^= (byte) (chunk >>> 8);
+            nonce[10] ^= (byte) chunk;
+            if (last) {
+                nonce[11] ^= 1;
+            }
+            return nonce;
+        }
+    }
+
+    /**
+     * Reads plaintext a window of chunks at a time and hands out the header
+     * followed by the sealed chunks.
+     */
+    private static final class EncryptingChannel implements ReadableByteChannel {
+
+        private final ReadableByteChannel source;
+        private final long length;
+        private final Sealer sealer;
+        private final ByteBuffer plaintext;
+        private final ByteBuffer ciphertext;
+        private long consumed;
+        private long nextChunk;
+        private boolean finished;
+        private boolean open = true;
+
+        EncryptingChannel(ReadableByteChannel source, long length, Sealer sealer) {
+            this.source = source;
+            this.length = length;
+            this.sealer = sealer;
+            int window = windowChunks(sealer.chunkSize);
+            this.plaintext = ByteBuffer.allocate(window * sealer.chunkSize);
+            this.ciphertext = ByteBuffer.allocate(
+                Math.max(sealer.header.length, window * (sealer.chunkSize + TAG_LENGTH)));
+            ciphertext.put(sealer.header).flip();
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            int read = 0;
+            while (destination.hasRemaining()) {
+                if (!ciphertext.hasRemaining()) {
+                    if (finished) {
+                        break;
+                    }
+                    sealWindow();
+                }
+                int before = destination.position();
+                transfer(ciphertext, destination);
+                read += destination.position() - before;
+            }
+            return read == 0 && finished && destination.hasRemaining() ? -1 : read;
+        }
+
+        private void sealWindow() throws IOException {
+            int wanted = (int) Math.min(plaintext.capacity(), length - consumed);
+            plaintext.clear().limit(wanted);
+            while (plaintext.hasRemaining()) {
+                if (source.read(plaintext) < 0) {
+                    throw new IllegalArgumentException(
+                        "Input ended after " + (consumed + plaintext.position()) + " of " + length + " bytes");
+                }
+            }
+            consumed += wanted;
+            boolean lastWindow = consumed == length;
+            int chunkSize = sealer.chunkSize;
+            // Only the last window can end in a partial or empty chunk
+            int chunks = lastWindow ? (int) chunkCount(wanted, chunkSize) : wanted / chunkSize;
+            long first = nextChunk;
+            ciphertext.clear();
+            forEachChunk(chunks, chunk -> {
+                int from = chunk * chunkSize;
+                int count = Math.min(chunkSize, wanted - from);
+                sealer.seal(first + chunk, lastWindow && chunk == chunks - 1, plaintext.slice(from, count),
+                    ciphertext.slice(chunk * (chunkSize + TAG_LENGTH), count + TAG_LENGTH));
+            });
+            ciphertext.limit(wanted + chunks * TAG_LENGTH);
+            nextChunk += chunks;
+            finished = lastWindow;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            open = false;
+            source.close();
+        }
+    }
+
+    /**
+     * Collects ciphertext a window of chunks at a time. A full window is only
+     * opened once more ciphertext arrives, since until then its last chunk
+     * may be the final one.
+     */
+    private static final class DecryptingChannel implements WritableByteChannel {
+
+        private final WritableByteChannel target;
+        private final String password;
+        // Holds the format byte until it tells how long the header is
+        private final ByteBuffer header =
+            ByteBuffer.allocate(HEADER_LENGTH + Integer.BYTES + MessageEncryption.KEY_CHECK_LENGTH).limit(1);
+        private Sealer sealer;
+        private ByteBuffer ciphertext;
+        private ByteBuffer plaintext;
+        private long nextChunk;
+        private boolean open = true;
+
+        DecryptingChannel(WritableByteChannel target, String password) {
+            this.target = target;
+            this.password = password;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            int written = source.remaining();
+            while (source.hasRemaining()) {
+                if (sealer == null) {
+                    transfer(source, header);
+                    if (!header.hasRemaining() && header.limit() == 1) {
+                        header.limit(headerLength(header.get(0)));
+                    } else if (!header.hasRemaining()) {
+                        sealer = Sealer.read(header.flip(), password);
+                        int window = windowChunks(sealer.chunkSize);
+                        ciphertext = ByteBuffer.allocate(window * (sealer.chunkSize + TAG_LENGTH));
+                        plaintext = ByteBuffer.allocate(window * sealer.chunkSize);
+                    }
+                    continue;
+                }
+                if (!ciphertext.hasRemaining()) {
+                    openWindow(false);
+                }
+                transfer(source, ciphertext);
+            }
+            return written;
+        }
+
+        private void openWindow(boolean last) throws IOException {
+            int body = ciphertext.flip().remaining();
+            int chunkSize = sealer.chunkSize;
+            int sealedChunk = chunkSize + TAG_LENGTH;
+            int chunks = last ? Math.max(1, (body + sealedChunk - 1) / sealedChunk) : body / sealedChunk;
+            if (body - (chunks - 1) * sealedChunk < TAG_LENGTH) {
+                throw new DecryptionException("Decryption failed: Encrypted message is truncated");
+            }
+            long first = nextChunk;
+            plaintext.clear();
+            forEachChunk(chunks, chunk -> {
+                int from = chunk * sealedChunk;
+                int count = Math.min(sealedChunk, body - from);
+                sealer.open(first + chunk, last && chunk == chunks - 1, ciphertext.slice(from, count),
+                    plaintext.slice(chunk * chunkSize, count - TAG_LENGTH));
+            });
+            plaintext.limit(body - chunks * TAG_LENGTH);
+            while (plaintext.hasRemaining()) {
+                target.write(plaintext);
+            }
+            nextChunk += chunks;
+            ciphertext.clear();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        /**
+         * Opens the final window, failing if the message was cut short, and
+         * closes the plaintext channel.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!open) {
+                return;
+            }
+            open = false;
+            try {
+                if (sealer == null) {
+                    throw new DecryptionException("Decryption failed: Invalid encrypted message format");
+                }
+                openWindow(true);
+            } finally {
+                target.close();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+        void process(int chunk);
+    }
+
+    /**
+     * Halves a chunk range until it is small enough for one task.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+
+        private final int firstChunk;
+        private final int endChunk;
+        private final ChunkAction action;
+
+        ChunkTask(int firstChunk, int endChunk, ChunkAction action) {
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - firstChunk <= CHUNKS_PER_TASK) {
+                for (int chunk = firstChunk; chunk < endChunk; chunk++) {
+                    action.process(chunk);
+                }
+                return;
+            }
+            int middle = (firstChunk + endChunk) >>> 1;
+            invokeAll(new ChunkTask(firstChunk, middle, action), new ChunkTask(middle, endChunk, action));
+        }
+    }
+}
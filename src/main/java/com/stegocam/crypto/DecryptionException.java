@@ -0,0 +1,17 @@
+package com.stegocam.crypto;
+
+/**
+ * Thrown when a payload cannot be decrypted because the password is wrong,
+ * the payload is damaged or it is not in a format this version reads, as
+ * opposed to a failure of the platform's crypto providers.
+ */
+public class DecryptionException extends RuntimeException {
+
+    public DecryptionException(String message) {
+        super(message);
+    }
+
+    public DecryptionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,243 @@
+package com.stegocam.crypto;
+
+import com.stegocam.config.AppConfig;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Encrypts many messages under one password while paying for PBKDF2 once.
+ * Opening a session derives a master key from the password and a random
+ * session salt; each message then gets its own AES key from an HKDF-Expand
+ * (RFC 5869) of the master key over the message IV, which costs one HMAC.
+ * Payloads are laid out as
+ * <pre>
+ *   FORMAT_GCM_SESSION (1) | [iterations (4)] | [key check (4)] | session salt (16) | IV (12) | ciphertext || tag (16)
+ * </pre>
+ * with everything before the ciphertext authenticated. The iteration count
+ * and key check value, here of the master key, are present as described in
+ * {@link MessageEncryption}. {@link MessageEncryption#decryptBytes(byte[], String)}
+ * reads them with the password alone; the session that wrote them also
+ * skips PBKDF2 when decrypting. Sessions are thread-safe.
+ */
+public final class EncryptionSession implements AutoCloseable {
+
+    /**
+     * Leading byte of session payloads, next to {@link MessageEncryption#FORMAT_GCM}.
+     */
+    public static final byte FORMAT_GCM_SESSION = 0x03;
+    public static final int SALT_LENGTH = 16;
+    /**
+     * Header size without the key derivation fields.
+     */
+    public static final int HEADER_LENGTH = 1 + SALT_LENGTH + AppConfig.IV_SIZE;
+
+    private static final int TAG_LENGTH = 16;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final byte[] KEY_INFO = "StegoCam message key".getBytes(StandardCharsets.US_ASCII);
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final String password;
+    private final byte[] salt;
+    // Format byte, key derivation fields and salt shared by every payload of the session
+    private final byte[] prefix;
+    private final byte[] masterKey;
+    // Held shared while the master key is in use, exclusively to zero it
+    private final ReadWriteLock keyLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    private EncryptionSession(String password, int iterations, byte[] salt) {
+        MessageEncryption.requirePassword(password, "Encryption");
+        this.password = password;
+        this.salt = salt;
+        this.masterKey = deriveMasterKey(password, salt, iterations);
+        ByteBuffer prefix = ByteBuffer.allocate(1 + MessageEncryption.kdfFieldLengthFor(iterations) + SALT_LENGTH)
+            .put(MessageEncryption.formatByte(FORMAT_GCM_SESSION, iterations));
+        MessageEncryption.putKdfFields(prefix, iterations, new SecretKeySpec(masterKey, HMAC_ALGORITHM));
+        this.prefix = prefix.put(salt).array();
+    }
+
+    /**
+     * Start a session for {@code password} with a fresh salt and the current
+     * {@link MessageEncryption#iterationCount()}. This runs PBKDF2 once.
+     */
+    public static EncryptionSession open(String password) {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        return new EncryptionSession(password, MessageEncryption.iterationCount(), salt);
+    }
+
+    /**
+     * Size of this session's payload for a plaintext of the given length.
+     */
+    public int encryptedLength(int plaintextLength) {
+        return prefix.length + AppConfig.IV_SIZE + plaintextLength + TAG_LENGTH;
+    }
+
+    public byte[] salt() {
+        return salt.clone();
+    }
+
+    /**
+     * Encrypts {@code plaintext} under a key of its own, derived from the
+     * session's master key.
+     */
+    public byte[] encrypt(byte[] plaintext) {
+        Objects.requireNonNull(plaintext, "plaintext");
+        byte[] payload = new byte[encryptedLength(plaintext.length)];
+        byte[] iv = new byte[AppConfig.IV_SIZE];
+        RANDOM.nextBytes(iv);
+        ByteBuffer.wrap(payload).put(prefix).put(iv);
+        int headerLength = prefix.length + AppConfig.IV_SIZE;
+        keyLock.readLock().lock();
+        try {
+            ensureOpen();
+            Cipher cipher = Cipher.getInstance(AppConfig.CRYPTO_ALGORITHM);
+            cipher.init(Cipher.ENCRYPT_MODE, messageKey(masterKey, iv), new GCMParameterSpec(TAG_LENGTH * 8, iv));
+            cipher.updateAAD(payload, 0, headerLength);
+            cipher.doFinal(plaintext, 0, plaintext.length, payload, headerLength);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Encryption failed: " + e.getMessage(), e);
+        } finally {
+            keyLock.readLock().unlock();
+        }
+        return payload;
+    }
+
+    /**
+     * Decrypts any payload {@link MessageEncryption#decryptBytes(byte[], String)}
+     * accepts under the session's password. Payloads from this session reuse
+     * its master key; the rest derive their keys as usual.
+     */
+    public byte[] decrypt(byte[] payload) {
+        Objects.requireNonNull(payload, "payload");
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        keyLock.readLock().lock();
+        try {
+            ensureOpen();
+            if (payload.length >= prefix.length
+                    && MessageDigest.isEqual(prefix, Arrays.copyOf(payload, prefix.length))) {
+                return decrypt(buffer, masterKey);
+            }
+        } finally {
+            keyLock.readLock().unlock();
+        }
+        return MessageEncryption.decryptBytes(buffer, password);
+    }
+
+    /**
+     * Zero the master key. The session cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        keyLock.writeLock().lock();
+        try {
+            closed = true;
+            Arrays.fill(masterKey, (byte) 0);
+        } finally {
+            keyLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Decrypts the remaining bytes of a session payload from the password
+     * alone, leaving the buffer's position unchanged.
+     */
+    static byte[] decrypt(ByteBuffer payload, String password) {
+        if (payload.remaining() < headerLength(payload) + TAG_LENGTH) {
+            throw new DecryptionException("Decryption failed: Invalid encrypted message format");
+        }
+        ByteBuffer header = payload.duplicate();
+        byte format = header.get();
+        int iterations = MessageEncryption.readIterations(header, format);
+        byte[] keyCheck = MessageEncryption.readKeyCheck(header, format);
+        byte[] salt = new byte[SALT_LENGTH];
+        header.get(salt);
+        SecretKey key;
+        try {
+            key = MessageEncryption.lookupKey(password, salt, iterations);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Key derivation failed: " + e.getMessage(), e);
+        }
+        byte[] masterKey = key.getEncoded();
+        try {
+            MessageEncryption.verifyKeyCheck(keyCheck, new SecretKeySpec(masterKey, HMAC_ALGORITHM));
+            byte[] plaintext = decrypt(payload, masterKey);
+            MessageEncryption.rememberKey(password, salt, iterations, key);
+            return plaintext;
+        } finally {
+            Arrays.fill(masterKey, (byte) 0);
+        }
+    }
+
+    private static byte[] decrypt(ByteBuffer payload, byte[] masterKey) {
+        int headerLength = headerLength(payload);
+        if (payload.remaining() < headerLength + TAG_LENGTH) {
+            throw new DecryptionException("Decryption failed: Invalid encrypted message format");
+        }
+        ByteBuffer source = payload.duplicate();
+        byte[] header = new byte[headerLength];
+        source.get(header);
+        byte[] iv = Arrays.copyOfRange(header, headerLength - AppConfig.IV_SIZE, headerLength);
+        try {
+            Cipher cipher = Cipher.getInstance(AppConfig.CRYPTO_ALGORITHM);
+            cipher.init(Cipher.DECRYPT_MODE, messageKey(masterKey, iv), new GCMParameterSpec(TAG_LENGTH * 8, iv));
+            cipher.updateAAD(header);
+            byte[] plaintext = new byte[source.remaining() - TAG_LENGTH];
+            cipher.doFinal(source, ByteBuffer.wrap(plaintext));
+            return plaintext;
+        } catch (GeneralSecurityException e) {
+            throw new DecryptionException("Decryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static int headerLength(ByteBuffer payload) {
+        return payload.hasRemaining()
+            ? HEADER_LENGTH + MessageEncryption.kdfFieldLength(payload.get(payload.position()))
+            : HEADER_LENGTH;
+    }
+
+    private static byte[] deriveMasterKey(String password, byte[] salt, int iterations) {
+        try {
+            return MessageEncryption.deriveKey(password, salt, iterations).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Key derivation failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * HKDF-Expand of the master key over the IV. One HMAC block covers the
+     * 256-bit key, so T(1) is the whole output.
+     */
+    private static SecretKeySpec messageKey(byte[] masterKey, byte[] iv) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+        mac.init(new SecretKeySpec(masterKey, HMAC_ALGORITHM));
+        mac.update(KEY_INFO);
+        mac.update(iv);
+        mac.update((byte) 1);
+        byte[] key = mac.doFinal();
+        try {
+            return new SecretKeySpec(key, 0, AppConfig.KEY_SIZE / 8, "AES");
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Encryption session is closed");
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.stegocam.crypto;
+
+import com.stegocam.config.AppConfig;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Small in-memory cache of PBKDF2 output, so decrypting the same image again
+ * with the same password skips key derivation. Entries are found by an HMAC
+ * of the password, salt and iteration count under a random per-cache key,
+ * so neither passwords nor their plain hashes are kept. The cache holds at
+ * most a fixed number of keys, each for a fixed time, and zeroes key material
+ * when an entry is evicted, expires or is cleared.
+ * <p>
+ * Caching is off unless installed with {@link MessageEncryption#setKeyCache}
+ * or the {@code stegocam.keyCache} system property.
+ */
+public final class KeyCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final LongSupplier clock;
+    private final SecretKeySpec fingerprintKey;
+    private final LinkedHashMap<ByteBuffer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public KeyCache() {
+        this(AppConfig.KEY_CACHE_MAX_ENTRIES, Duration.ofSeconds(AppConfig.KEY_CACHE_TTL_SECONDS));
+    }
+
+    public KeyCache(int maxEntries, Duration timeToLive) {
+        this(maxEntries, timeToLive, System::nanoTime);
+    }
+
+    KeyCache(int maxEntries, Duration timeToLive, LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Key cache size must be positive");
+        }
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Key cache lifetime must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.clock = clock;
+        byte[] secret = new byte[32];
+        RANDOM.nextBytes(secret);
+        this.fingerprintKey = new SecretKeySpec(secret, HMAC_ALGORITHM);
+        Arrays.fill(secret, (byte) 0);
+    }
+
+    /**
+     * A copy of the key cached for these inputs, or null.
+     */
+    byte[] get(String password, byte[] salt, int iterations) {
+        ByteBuffer fingerprint = fingerprint(password, salt, iterations);
+        synchronized (this) {
+            Entry entry = entries.get(fingerprint);
+            if (entry == null) {
+                return null;
+            }
+            if (clock.getAsLong() - entry.expiresAt() >= 0) {
+                entries.remove(fingerprint);
+                entry.destroy();
+                return null;
+            }
+            return entry.key().clone();
+        }
+    }
+
+    /**
+     * Cache a copy of {@code key}, evicting expired entries and then the
+     * least recently used ones to stay within the size limit.
+     */
+    void put(String password, byte[] salt, int iterations, byte[] key) {
+        ByteBuffer fingerprint = fingerprint(password, salt, iterations);
+        synchronized (this) {
+            long now = clock.getAsLong();
+            Entry previous = entries.put(fingerprint, new Entry(key.clone(), now + timeToLiveNanos));
+            if (previous != null) {
+                previous.destroy();
+            }
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entries.size() > maxEntries || now - entry.expiresAt() >= 0) {
+                    it.remove();
+                    entry.destroy();
+                }
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drop and zero every cached key.
+     */
+    public synchronized void clear() {
+        for (Map.Entry<ByteBuffer, Entry> entry : entries.entrySet()) {
+            entry.getValue().destroy();
+        }
+        entries.clear();
+    }
+
+    private ByteBuffer fingerprint(String password, byte[] salt, int iterations) {
+        byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(fingerprintKey);
+            mac.update(ByteBuffer.allocate(2 * Integer.BYTES).putInt(iterations).putInt(salt.length).array());
+            mac.update(salt);
+            mac.update(passwordBytes);
+            return ByteBuffer.wrap(mac.doFinal());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is unavailable", e);
+        } finally {
+            Arrays.fill(passwordBytes, (byte) 0);
+        }
+    }
+
+    private record Entry(byte[] key, long expiresAt) {
+
+        void destroy() {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package com.stegocam.crypto;
 
+import com.stegocam.config.AppConfig;
+
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
-import java.security.spec.KeySpec;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Objects;
 
 /**
  * Message encryption/decryption utility using AES-256.
@@ -17,112 +26,467 @@ import java.util.Base64;
  * Note: While the historic Enigma cipher is fascinating, it's cryptographically weak by modern standards
  * and was famously broken during WWII. This implementation uses AES (Advanced Encryption Standard),
  * which provides military-grade security for your hidden messages.
+ * <p>
+ * The binary API produces {@code [FORMAT_GCM][12-byte IV][ciphertext || 16-byte tag]} using
+ * AES-GCM, ready to be embedded as-is. The String API wraps it in Base64 and can still read the
+ * AES-CBC text written by earlier versions, as can {@link #decryptBytes(byte[], String)}.
+ * Large payloads sealed in chunks by {@link ChunkedEncryption} and payloads written by an
+ * {@link EncryptionSession} are decrypted here as well.
+ * <p>
+ * Every binary format derives its key with PBKDF2 at {@link #iterationCount()}
+ * iterations. A count other than {@link #DEFAULT_ITERATIONS} is written after
+ * the format byte, which then carries {@link #FLAG_ITERATIONS}, so payloads
+ * always decrypt with the count they were sealed with. New payloads also
+ * carry a short key check value next to it, flagged by {@link #FLAG_KEY_CHECK},
+ * so a wrong password fails straight after key derivation instead of after
+ * a pass over the ciphertext.
  */
 public class MessageEncryption {
 
-    private static final String ALGORITHM = "AES/CBC/PKCS5Padding";
+    /**
+     * Leading byte of the binary format. It lies outside the Base64 alphabet, so
+     * a payload holding legacy Base64 text can never be mistaken for it.
+     */
+    public static final byte FORMAT_GCM = 0x01;
+
+    /**
+     * Set in the format byte when a 4-byte PBKDF2 iteration count follows it.
+     * Flagged format bytes stay outside the Base64 alphabet too.
+     */
+    public static final int FLAG_ITERATIONS = 0x10;
+    /**
+     * Set in the format byte when a key check value follows the iteration
+     * count. The value is an HMAC of the derived key, so testing a password
+     * against it costs the full key derivation, just like testing it against
+     * the authentication tag.
+     */
+    public static final int FLAG_KEY_CHECK = 0x80;
+    public static final int KEY_CHECK_LENGTH = 4;
+    public static final int DEFAULT_ITERATIONS = 65536;
+    public static final int MIN_ITERATIONS = 10_000;
+    // Also bounds the work a crafted payload can demand of the reader
+    public static final int MAX_ITERATIONS = 10_000_000;
+
+    private static final String LEGACY_ALGORITHM = "AES/CBC/PKCS5Padding";
     private static final String KEY_ALGORITHM = "AES";
-    private static final int KEY_LENGTH = 256;
-    private static final int ITERATION_COUNT = 65536;
-    private static final int IV_LENGTH = 16;
+    private static final int LEGACY_IV_LENGTH = 16;
+    private static final int TAG_LENGTH = 16;
+    private static final int HEADER_LENGTH = 1 + AppConfig.IV_SIZE;
+    private static final byte[] KEY_CHECK_LABEL = "StegoCam key check".getBytes(StandardCharsets.US_ASCII);
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+    private static final int CALIBRATION_RUNS = 4;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static volatile int iterationCount =
+        checkIterations(Integer.getInteger("stegocam.kdfIterations", DEFAULT_ITERATIONS));
+    private static volatile KeyCache keyCache =
+        Boolean.getBoolean("stegocam.keyCache") ? new KeyCache() : null;
 
     /**
-     * Encrypts a message using AES-256 encryption.
-     * 
-     * @param message The plaintext message to encrypt
-     * @param password The encryption key/password
-     * @return Base64-encoded encrypted message with IV prepended, or null on error
+     * Cache derived keys in {@code cache}, or stop caching with null. The
+     * cache being replaced is cleared.
      */
-    public static String encrypt(String message, String password) {
-        if (message == null || message.isEmpty()) {
-            return message;
-        }
-        if (password == null || password.isEmpty()) {
-            throw new IllegalArgumentException("Encryption password cannot be empty");
+    public static void setKeyCache(KeyCache cache) {
+        KeyCache previous = keyCache;
+        keyCache = cache;
+        if (previous != null && previous != cache) {
+            previous.clear();
         }
+    }
 
+    /**
+     * PBKDF2 iterations used for new payloads.
+     */
+    public static int iterationCount() {
+        return iterationCount;
+    }
+
+    /**
+     * Set the PBKDF2 iterations used for new payloads, between
+     * {@link #MIN_ITERATIONS} and {@link #MAX_ITERATIONS}. Existing payloads
+     * keep decrypting with the count recorded in them.
+     */
+    public static void setIterationCount(int iterations) {
+        iterationCount = checkIterations(iterations);
+    }
+
+    /**
+     * Measures PBKDF2 on this host and returns the iteration count that
+     * derives a key in about {@code budget}, rounded down to a thousand and
+     * kept between {@link #MIN_ITERATIONS} and {@link #MAX_ITERATIONS}. The
+     * fastest of a few timed runs is used, so the first, cold run does not
+     * skew it.
+     */
+    public static int calibrateIterations(Duration budget) {
+        Objects.requireNonNull(budget, "budget");
+        if (budget.isNegative() || budget.isZero()) {
+            throw new IllegalArgumentException("Key derivation budget must be positive");
+        }
+        byte[] salt = new byte[AppConfig.IV_SIZE];
+        RANDOM.nextBytes(salt);
+        long fastest = Long.MAX_VALUE;
         try {
-            // Generate random IV
-            byte[] iv = new byte[IV_LENGTH];
-            SecureRandom random = new SecureRandom();
-            random.nextBytes(iv);
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
+            for (int run = 0; run < CALIBRATION_RUNS; run++) {
+                long start = System.nanoTime();
+                pbkdf2("calibration", salt, CALIBRATION_ITERATIONS);
+                fastest = Math.min(fastest, System.nanoTime() - start);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is unavailable", e);
+        }
+        double iterations = (double) budget.toNanos() * CALIBRATION_ITERATIONS / Math.max(1, fastest);
+        long rounded = (long) Math.min(iterations, MAX_ITERATIONS) / 1000 * 1000;
+        return (int) Math.max(MIN_ITERATIONS, rounded);
+    }
+
+    /**
+     * Size of the binary output for a plaintext of the given length.
+     */
+    public static int encryptedLength(int plaintextLength) {
+        return encryptedLength(plaintextLength, iterationCount);
+    }
 
-            // Derive key from password
-            SecretKey key = deriveKey(password, iv);
+    private static int encryptedLength(int plaintextLength, int iterations) {
+        return HEADER_LENGTH + kdfFieldLengthFor(iterations) + plaintextLength + TAG_LENGTH;
+    }
 
-            // Encrypt
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, key, ivSpec);
-            byte[] encrypted = cipher.doFinal(message.getBytes(StandardCharsets.UTF_8));
+    /**
+     * Encrypts raw bytes using AES-256-GCM.
+     *
+     * @param plaintext The bytes to encrypt
+     * @param password The encryption key/password
+     * @return Format byte, IV, ciphertext and authentication tag
+     */
+    public static byte[] encryptBytes(byte[] plaintext, String password) {
+        Objects.requireNonNull(plaintext, "plaintext");
+        int iterations = iterationCount;
+        ByteBuffer destination = ByteBuffer.allocate(encryptedLength(plaintext.length, iterations));
+        encryptBytes(ByteBuffer.wrap(plaintext), password, destination, iterations);
+        return destination.array();
+    }
 
-            // Prepend IV to encrypted data
-            byte[] combined = new byte[IV_LENGTH + encrypted.length];
-            System.arraycopy(iv, 0, combined, 0, IV_LENGTH);
-            System.arraycopy(encrypted, 0, combined, IV_LENGTH, encrypted.length);
+    /**
+     * Encrypts the remaining bytes of {@code plaintext} into {@code destination},
+     * which needs {@link #encryptedLength} bytes of space. Both buffers advance.
+     */
+    public static void encryptBytes(ByteBuffer plaintext, String password, ByteBuffer destination) {
+        encryptBytes(plaintext, password, destination, iterationCount);
+    }
 
-            // Encode to Base64 for safe text storage
-            return Base64.getEncoder().encodeToString(combined);
+    private static void encryptBytes(ByteBuffer plaintext, String password, ByteBuffer destination, int iterations) {
+        Objects.requireNonNull(plaintext, "plaintext");
+        Objects.requireNonNull(destination, "destination");
+        requirePassword(password, "Encryption");
+        if (destination.remaining() < encryptedLength(plaintext.remaining(), iterations)) {
+            throw new IllegalArgumentException("Destination buffer is too small for the encrypted message");
+        }
 
-        } catch (Exception e) {
+        try {
+            byte[] iv = new byte[AppConfig.IV_SIZE];
+            RANDOM.nextBytes(iv);
+
+            Cipher cipher = Cipher.getInstance(AppConfig.CRYPTO_ALGORITHM);
+            SecretKey key = deriveKey(password, iv, iterations);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, iv));
+            destination.put(formatByte(FORMAT_GCM, iterations));
+            putKdfFields(destination, iterations, key);
+            destination.put(iv);
+            cipher.doFinal(plaintext, destination);
+        } catch (GeneralSecurityException e) {
             throw new RuntimeException("Encryption failed: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Decrypts a message that was encrypted with the encrypt method.
+     * Decrypts a payload produced by {@link #encryptBytes(byte[], String)}, or the
+     * Base64 text stored by earlier versions.
+     *
+     * @param payload The embedded payload
+     * @param password The decryption key/password (must match encryption password)
+     * @return Decrypted plaintext bytes
+     */
+    public static byte[] decryptBytes(byte[] payload, String password) {
+        Objects.requireNonNull(payload, "payload");
+        return decryptBytes(ByteBuffer.wrap(payload), password);
+    }
+
+    /**
+     * Decrypts the remaining bytes of {@code payload}, leaving its position unchanged.
+     */
+    public static byte[] decryptBytes(ByteBuffer payload, String password) {
+        Objects.requireNonNull(payload, "payload");
+        requirePassword(password, "Decryption");
+        if (!payload.hasRemaining()) {
+            return new byte[0];
+        }
+        byte format = payload.get(payload.position());
+        if (isFormat(format, FORMAT_GCM)) {
+            return decryptGcm(payload.duplicate(), password);
+        }
+        if (isFormat(format, ChunkedEncryption.FORMAT_GCM_CHUNKED)) {
+            return ChunkedEncryption.decrypt(payload, password);
+        }
+        if (isFormat(format, EncryptionSession.FORMAT_GCM_SESSION)) {
+            return EncryptionSession.decrypt(payload, password);
+        }
+        // Anything else is Base64 text written by an earlier version
+        byte[] text = new byte[payload.remaining()];
+        payload.duplicate().get(text);
+        return decryptText(new String(text, StandardCharsets.US_ASCII), password);
+    }
+
+    /**
+     * Encrypts a message using AES-256 encryption.
+     * 
+     * @param message The plaintext message to encrypt
+     * @param password The encryption key/password
+     * @return Base64-encoded binary payload (see {@link #encryptBytes(byte[], String)})
+     */
+    public static String encrypt(String message, String password) {
+        if (message == null || message.isEmpty()) {
+            return message;
+        }
+        requirePassword(password, "Encryption");
+        return Base64.getEncoder().encodeToString(encryptBytes(message.getBytes(StandardCharsets.UTF_8), password));
+    }
+
+    /**
+     * Decrypts a message that was encrypted with the encrypt method, including
+     * AES-CBC messages from earlier versions.
      * 
-     * @param encryptedMessage Base64-encoded encrypted message with IV prepended
+     * @param encryptedMessage Base64-encoded encrypted message
      * @param password The decryption key/password (must match encryption password)
-     * @return Decrypted plaintext message, or null on error
+     * @return Decrypted plaintext message
      */
     public static String decrypt(String encryptedMessage, String password) {
         if (encryptedMessage == null || encryptedMessage.isEmpty()) {
             return encryptedMessage;
         }
-        if (password == null || password.isEmpty()) {
-            throw new IllegalArgumentException("Decryption password cannot be empty");
+        requirePassword(password, "Decryption");
+        return new String(decryptText(encryptedMessage, password), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] decryptText(String encryptedMessage, String password) {
+        byte[] combined;
+        try {
+            combined = Base64.getDecoder().decode(encryptedMessage.trim());
+        } catch (IllegalArgumentException e) {
+            throw new DecryptionException("Decryption failed: " + e.getMessage(), e);
+        }
+        if (combined.length > 0 && isFormat(combined[0], FORMAT_GCM)) {
+            try {
+                return decryptGcm(ByteBuffer.wrap(combined), password);
+            } catch (DecryptionException e) {
+                // A legacy IV may start with any format byte, and under its right password a legacy
+                // payload fails the key check just like a wrong password does, so retry it as CBC
+                if (combined.length < 2 * LEGACY_IV_LENGTH || combined.length % LEGACY_IV_LENGTH != 0) {
+                    throw e;
+                }
+                try {
+                    return decryptLegacy(combined, password);
+                } catch (DecryptionException legacyFailure) {
+                    // The GCM failure, such as a wrong password, is the more likely explanation
+                    throw e;
+                }
+            }
         }
+        return decryptLegacy(combined, password);
+    }
 
+    private static byte[] decryptGcm(ByteBuffer payload, String password) {
+        byte format = payload.get(payload.position());
+        if (payload.remaining() < HEADER_LENGTH + kdfFieldLength(format) + TAG_LENGTH) {
+            throw new DecryptionException("Decryption failed: Invalid encrypted message format");
+        }
         try {
-            // Decode from Base64
-            byte[] combined = Base64.getDecoder().decode(encryptedMessage);
+            payload.get(); // format byte
+            int iterations = readIterations(payload, format);
+            byte[] keyCheck = readKeyCheck(payload, format);
+            byte[] iv = new byte[AppConfig.IV_SIZE];
+            payload.get(iv);
+            SecretKey key = lookupKey(password, iv, iterations);
+            verifyKeyCheck(keyCheck, key);
 
-            if (combined.length < IV_LENGTH) {
-                throw new IllegalArgumentException("Invalid encrypted message format");
+            Cipher cipher = Cipher.getInstance(AppConfig.CRYPTO_ALGORITHM);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, iv));
+            byte[] decrypted = new byte[cipher.getOutputSize(payload.remaining())];
+            int length = cipher.doFinal(payload, ByteBuffer.wrap(decrypted));
+            rememberKey(password, iv, iterations, key);
+            return length == decrypted.length ? decrypted : Arrays.copyOf(decrypted, length);
+        } catch (GeneralSecurityException e) {
+            throw new DecryptionException("Decryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] decryptLegacy(byte[] combined, String password) {
+        if (combined.length < LEGACY_IV_LENGTH) {
+            throw new DecryptionException("Decryption failed: Invalid encrypted message format");
+        }
+        try {
+            byte[] iv = Arrays.copyOfRange(combined, 0, LEGACY_IV_LENGTH);
+            // CBC padding is no proof of the right password, so legacy keys are never cached
+            Cipher cipher = Cipher.getInstance(LEGACY_ALGORITHM);
+            cipher.init(Cipher.DECRYPT_MODE, deriveKey(password, iv, DEFAULT_ITERATIONS), new IvParameterSpec(iv));
+            return cipher.doFinal(combined, LEGACY_IV_LENGTH, combined.length - LEGACY_IV_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new DecryptionException("Decryption failed: " + e.getMessage(), e);
+        }
+    }
+
+    static void requirePassword(String password, String operation) {
+        if (password == null || password.isEmpty()) {
+            throw new IllegalArgumentException(operation + " password cannot be empty");
+        }
+    }
+
+    /**
+     * Derives a cryptographic key from a password using PBKDF2. Sealing uses
+     * this directly: its salt is fresh, so caching the key would only crowd
+     * out keys worth keeping.
+     */
+    static SecretKey deriveKey(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        return toKey(pbkdf2(password, salt, iterations));
+    }
+
+    /**
+     * Derives a key for decryption, taking it from the key cache when one is
+     * installed. Nothing is cached here; see {@link #rememberKey}.
+     */
+    static SecretKey lookupKey(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        KeyCache cache = keyCache;
+        byte[] key = cache == null ? null : cache.get(password, salt, iterations);
+        return key == null ? deriveKey(password, salt, iterations) : toKey(key);
+    }
+
+    /**
+     * Cache {@code key} once it has passed its key check or opened a
+     * payload, so wrong passwords never take a place in the cache.
+     */
+    static void rememberKey(String password, byte[] salt, int iterations, SecretKey key) {
+        KeyCache cache = keyCache;
+        if (cache != null) {
+            byte[] encoded = key.getEncoded();
+            try {
+                cache.put(password, salt, iterations, encoded);
+            } finally {
+                Arrays.fill(encoded, (byte) 0);
             }
+        }
+    }
+
+    private static SecretKey toKey(byte[] key) {
+        try {
+            return new SecretKeySpec(key, KEY_ALGORITHM);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, AppConfig.KEY_SIZE);
+        try {
+            return factory.generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
+    }
 
-            // Extract IV and encrypted data
-            byte[] iv = new byte[IV_LENGTH];
-            byte[] encrypted = new byte[combined.length - IV_LENGTH];
-            System.arraycopy(combined, 0, iv, 0, IV_LENGTH);
-            System.arraycopy(combined, IV_LENGTH, encrypted, 0, encrypted.length);
+    private static int checkIterations(int iterations) {
+        if (iterations < MIN_ITERATIONS || iterations > MAX_ITERATIONS) {
+            throw new IllegalArgumentException(
+                "Iteration count must be between " + MIN_ITERATIONS + " and " + MAX_ITERATIONS);
+        }
+        return iterations;
+    }
 
-            IvParameterSpec ivSpec = new IvParameterSpec(iv);
+    /**
+     * Whether {@code value} is the format byte {@code format}, with or without flags.
+     */
+    static boolean isFormat(byte value, byte format) {
+        return (value & 0xFF & ~(FLAG_ITERATIONS | FLAG_KEY_CHECK)) == format;
+    }
 
-            // Derive key from password
-            SecretKey key = deriveKey(password, iv);
+    /**
+     * The format byte announcing the key derivation fields for {@code iterations}.
+     */
+    static byte formatByte(byte format, int iterations) {
+        int flags = iterations == DEFAULT_ITERATIONS ? FLAG_KEY_CHECK : FLAG_KEY_CHECK | FLAG_ITERATIONS;
+        return (byte) (format | flags);
+    }
 
-            // Decrypt
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, key, ivSpec);
-            byte[] decrypted = cipher.doFinal(encrypted);
+    /**
+     * Bytes of key derivation fields following a format byte for {@code iterations}.
+     */
+    static int kdfFieldLengthFor(int iterations) {
+        return (iterations == DEFAULT_ITERATIONS ? 0 : Integer.BYTES) + KEY_CHECK_LENGTH;
+    }
 
-            return new String(decrypted, StandardCharsets.UTF_8);
+    /**
+     * Bytes of key derivation fields following the format byte {@code format}.
+     */
+    static int kdfFieldLength(byte format) {
+        return ((format & FLAG_ITERATIONS) != 0 ? Integer.BYTES : 0)
+            + ((format & FLAG_KEY_CHECK) != 0 ? KEY_CHECK_LENGTH : 0);
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Decryption failed: " + e.getMessage(), e);
+    /**
+     * Write the iteration count, when not the default, and the key check value of {@code key}.
+     */
+    static void putKdfFields(ByteBuffer destination, int iterations, SecretKey key) {
+        if (iterations != DEFAULT_ITERATIONS) {
+            destination.putInt(iterations);
         }
+        destination.put(keyCheck(key));
     }
 
     /**
-     * Derives a cryptographic key from a password using PBKDF2.
+     * Read the iteration count following the format byte {@code format}.
      */
-    private static SecretKey deriveKey(String password, byte[] salt) throws Exception {
-        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERATION_COUNT, KEY_LENGTH);
-        SecretKey tmp = factory.generateSecret(spec);
-        return new SecretKeySpec(tmp.getEncoded(), KEY_ALGORITHM);
+    static int readIterations(ByteBuffer source, byte format) {
+        if ((format & FLAG_ITERATIONS) == 0) {
+            return DEFAULT_ITERATIONS;
+        }
+        int iterations = source.getInt();
+        if (iterations < MIN_ITERATIONS || iterations > MAX_ITERATIONS || iterations == DEFAULT_ITERATIONS) {
+            throw new DecryptionException("Decryption failed: Unsupported iteration count " + iterations);
+        }
+        return iterations;
+    }
+
+    /**
+     * Read the key check value following the iteration count, or null when
+     * the payload predates it.
+     */
+    static byte[] readKeyCheck(ByteBuffer source, byte format) {
+        if ((format & FLAG_KEY_CHECK) == 0) {
+            return null;
+        }
+        byte[] keyCheck = new byte[KEY_CHECK_LENGTH];
+        source.get(keyCheck);
+        return keyCheck;
+    }
+
+    /**
+     * Reject {@code key} before any ciphertext is touched if it does not
+     * match the recorded key check value.
+     */
+    static void verifyKeyCheck(byte[] expected, SecretKey key) {
+        if (expected != null && !MessageDigest.isEqual(expected, keyCheck(key))) {
+            throw new DecryptionException("Decryption failed: Wrong password");
+        }
+    }
+
+    private static byte[] keyCheck(SecretKey key) {
+        byte[] encoded = key.getEncoded();
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(encoded, "HmacSHA256"));
+            return Arrays.copyOf(mac.doFinal(KEY_CHECK_LABEL), KEY_CHECK_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is unavailable", e);
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
     }
 
     /**
@@ -134,7 +498,7 @@ public class MessageEncryption {
         }
         try {
             byte[] decoded = Base64.getDecoder().decode(message);
-            return decoded.length >= IV_LENGTH;
+            return decoded.length >= HEADER_LENGTH + TAG_LENGTH;
         } catch (IllegalArgumentException e) {
             return false;
         }
@@ -1,9 +1,13 @@
 package com.stegocam.gui;
 
+import com.stegocam.config.AppConfig;
 import com.stegocam.controller.StegoController;
-import com.stegocam.crypto.MessageEncryption;
+import com.stegocam.io.ImageHandler;
+import com.stegocam.io.ThumbnailCache;
+import com.stegocam.stego.Payload;
 import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -21,13 +25,25 @@ import javafx.stage.Stage;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MainUI {
 
     private final StegoController stegoController;
+    private final ImageHandler imageHandler;
+    private final ThumbnailCache thumbnails;
+    private final ExecutorService workers;
     private Stage ownerStage;
     private TextField sourceFolderField;
     private TextField imageFileField;
@@ -36,6 +52,9 @@ public class MainUI {
     private TextArea messageArea;
     private PasswordField encryptionKeyField;
     private TextArea resultArea;
+    private HBox thumbnailStrip;
+    private Task<Void> thumbnailTask;
+    private String previewPath;
 
     // Visualization
     private ImageView originalView;
@@ -48,8 +67,36 @@ public class MainUI {
     private int failedExtractionCount = 0;
     private static final int MAX_FAILED_ATTEMPTS = 5;
 
+    // Background extraction; the last extracted payload is kept so a retry with another key skips the image decode
+    private Task<String> extractTask;
+    private volatile ExtractedPayload cachedPayload;
+
     public MainUI() {
         this.stegoController = new StegoController();
+        this.imageHandler = new ImageHandler();
+        this.thumbnails = new ThumbnailCache();
+        this.workers = createWorkers();
+    }
+
+    /**
+     * Stop the background workers. Tasks still running are interrupted.
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private static ExecutorService createWorkers() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            AppConfig.WORKER_THREADS, AppConfig.WORKER_THREADS, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(AppConfig.WORKER_QUEUE_CAPACITY),
+            runnable -> {
+                Thread thread = new Thread(runnable, "stegocam-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     public void initialise(Stage primaryStage) {
@@ -68,7 +115,8 @@ public class MainUI {
         headerBox.setPadding(new Insets(10));
 
         // Left column
-        VBox folderSection = createTitledSection("Source Settings", createFolderSelectionBox(), createImageSelectionBox());
+        VBox folderSection = createTitledSection("Source Settings", createFolderSelectionBox(), createImageSelectionBox(),
+            createThumbnailStrip());
         VBox outputSection = createTitledSection("Output Settings", createOutputNamingBox());
         VBox messageSection = createTitledSection("Secret Message", createMessageBox());
         VBox actionSection = createActionSection();
@@ -117,7 +165,10 @@ public class MainUI {
             DirectoryChooser chooser = new DirectoryChooser();
             chooser.setTitle("Select Source Folder");
             File dir = chooser.showDialog(ownerStage);
-            if (dir != null) sourceFolderField.setText(dir.getAbsolutePath());
+            if (dir != null) {
+                sourceFolderField.setText(dir.getAbsolutePath());
+                showFolder(dir);
+            }
         });
         box.getChildren().addAll(label, sourceFolderField, browseButton);
         return box;
@@ -137,16 +188,98 @@ public class MainUI {
             chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Image Files", exts.toArray(new String[0])));
             File file = chooser.showOpenDialog(ownerStage);
             if (file != null) {
-                imageFileField.setText(file.getName());
-                sourceFolderField.setText(file.getParent());
-                if (outputNameField.getText().isBlank()) outputNameField.setText(stripExtension(file.getName()) + "-stego");
-                originalView.setImage(new Image("file:" + file.getAbsolutePath()));
+                if (!file.getParent().equals(sourceFolderField.getText())) {
+                    sourceFolderField.setText(file.getParent());
+                    showFolder(file.getParentFile());
+                }
+                selectImage(file);
             }
         });
         box.getChildren().addAll(label, imageFileField, browseButton);
         return box;
     }
 
+    private ScrollPane createThumbnailStrip() {
+        thumbnailStrip = new HBox(8);
+        thumbnailStrip.setPadding(new Insets(4));
+        thumbnailStrip.setStyle("-fx-background-color: #2c2f33;");
+        ScrollPane scroller = new ScrollPane(thumbnailStrip);
+        scroller.setPrefViewportHeight(AppConfig.THUMBNAIL_SIZE + 8);
+        scroller.setVbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
+        scroller.setStyle("-fx-background: #2c2f33; -fx-background-color: #2c2f33;");
+        return scroller;
+    }
+
+    /**
+     * Fill the thumbnail strip with the images in {@code dir}. Thumbnails come
+     * from the on-disk cache and are loaded one after another on a worker.
+     */
+    private void showFolder(File dir) {
+        if (thumbnailTask != null) {
+            thumbnailTask.cancel();
+        }
+        thumbnailStrip.getChildren().clear();
+        File[] files = dir.listFiles(file -> file.isFile() && imageHandler.isSupportedFormat(file.getName()));
+        if (files == null || files.length == 0) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        ImageView[] views = new ImageView[files.length];
+        for (int i = 0; i < files.length; i++) {
+            File file = files[i];
+            views[i] = new ImageView();
+            views[i].setFitWidth(AppConfig.THUMBNAIL_SIZE);
+            views[i].setFitHeight(AppConfig.THUMBNAIL_SIZE);
+            views[i].setPreserveRatio(true);
+            StackPane tile = new StackPane(views[i]);
+            tile.setPrefSize(AppConfig.THUMBNAIL_SIZE, AppConfig.THUMBNAIL_SIZE);
+            tile.setOnMouseClicked(e -> selectImage(file));
+            Tooltip.install(tile, new Tooltip(file.getName()));
+            thumbnailStrip.getChildren().add(tile);
+        }
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() {
+                for (int i = 0; i < files.length && !isCancelled(); i++) {
+                    BufferedImage thumbnail = thumbnails.getThumbnail(files[i].getPath());
+                    if (thumbnail != null) {
+                        Image image = SwingFXUtils.toFXImage(thumbnail, null);
+                        ImageView view = views[i];
+                        Platform.runLater(() -> view.setImage(image));
+                    }
+                }
+                return null;
+            }
+        };
+        thumbnailTask = task;
+        submit(task);
+    }
+
+    private void selectImage(File file) {
+        imageFileField.setText(file.getName());
+        if (outputNameField.getText().isBlank()) outputNameField.setText(stripExtension(file.getName()) + "-stego");
+        showPreview(file.getPath());
+    }
+
+    /**
+     * Show a subsampled decode of {@code path} in the original view, sized for
+     * the view rather than the image.
+     */
+    private void showPreview(String path) {
+        previewPath = path;
+        int width = (int) originalView.getFitWidth();
+        int height = (int) originalView.getFitHeight();
+        submit(() -> {
+            BufferedImage preview = imageHandler.loadPreview(path, width, height);
+            Image image = preview == null ? null : SwingFXUtils.toFXImage(preview, null);
+            Platform.runLater(() -> {
+                if (path.equals(previewPath)) {
+                    originalView.setImage(image);
+                }
+            });
+        });
+    }
+
     private HBox createOutputNamingBox() {
         HBox box = new HBox(10);
         box.setAlignment(Pos.CENTER_LEFT);
@@ -282,47 +415,58 @@ public class MainUI {
                 return;
             }
 
-            // Encrypt message with the provided key
-            final String messageToEmbed;
-            try {
-                messageToEmbed = MessageEncryption.encrypt(message, encryptionKey);
-                stepLabel.setText("🔐 Encrypting and embedding message...");
-            } catch (Exception ex) {
-                resultArea.setText("❌ Encryption failed: " + ex.getMessage());
-                return;
-            }
-
             String inputPath = Paths.get(folder, image).toString();
             String outputPath = Paths.get(folder, outputName + "." + extension).toString();
 
-            // Load original image
-            BufferedImage origImg = ImageIO.read(new File(inputPath));
-            originalView.setImage(new Image("file:" + inputPath));
             stepLabel.setText("🔐 Encrypting and embedding message...");
 
-            new Thread(() -> {
+            submit(() -> {
                 try {
-                    int width = origImg.getWidth();
-                    int height = origImg.getHeight();
-                    BufferedImage animImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-
-                    for (int y = 0; y < height; y++) {
-                        for (int x = 0; x < width; x++) {
-                            animImg.setRGB(x, y, origImg.getRGB(x, y));
-                        }
-                        int progressVal = y;
-                        Platform.runLater(() -> {
-                            progress.setProgress(progressVal / (double) height);
-                            stegoView.setImage(SwingFXUtils.toFXImage(animImg, null));
-                        });
-                        Thread.sleep(2); // animation speed
+                    // Compression, key derivation and decoding are slow, so all of them stay off the FX thread
+                    final Payload payloadToEmbed;
+                    try {
+                        payloadToEmbed = stegoController.sealSecret(message.getBytes(StandardCharsets.UTF_8), encryptionKey);
+                    } catch (Exception ex) {
+                        Platform.runLater(() -> resultArea.setText("❌ Encryption failed: " + ex.getMessage()));
+                        return;
+                    }
+                    // Only the header is read here, so undersized covers are turned away before decoding
+                    if (!stegoController.canEmbed(inputPath, payloadToEmbed.data().length)) {
+                        Platform.runLater(() -> resultArea.setText("❌ Image is missing or too small for this message: " + inputPath));
+                        return;
+                    }
+                    BufferedImage origImg = ImageIO.read(new File(inputPath));
+                    if (origImg == null) {
+                        Platform.runLater(() -> resultArea.setText("❌ Unable to read image: " + inputPath));
+                        return;
                     }
 
-                    boolean success = stegoController.embedMessage(inputPath, outputPath, messageToEmbed);
+                    // The preview starts from the cover and then follows the rows the engine rewrites
+                    boolean success;
+                    if (PreviewSurface.supports(origImg)) {
+                        // Both views share pixels with the image that is embedded and saved
+                        PreviewSurface cover = PreviewSurface.copyOf(origImg);
+                        PreviewSurface stego = cover.copy();
+                        origImg = null;
+                        Platform.runLater(() -> originalView.setImage(cover.fxImage()));
+                        ProgressPreview preview = new ProgressPreview(stegoView, progress, stego);
+                        preview.show(stego.image());
+                        success = stegoController.embedPayloadInPlace(stego.image(), outputPath, payloadToEmbed, preview);
+                        preview.flush();
+                    } else {
+                        // Translucent covers cannot be shared with the premultiplied FX buffer;
+                        // the original view keeps the subsampled preview shown on selection
+                        ProgressPreview preview = new ProgressPreview(stegoView, progress);
+                        preview.show(origImg);
+                        success = stegoController.embedPayload(origImg, outputPath, payloadToEmbed, preview);
+                        preview.flush();
+                    }
+                    if (success) {
+                        forgetPayload(outputPath);
+                    }
                     Platform.runLater(() -> {
                         if (success) {
                             stepLabel.setText("✅ Message embedded successfully! (AES-256 encrypted)");
-                            stegoView.setImage(new Image("file:" + outputPath));
                             resultArea.setText("✅ Message embedded (AES-256 encrypted)!\nSaved to: " + outputPath);
                         } else {
                             stepLabel.setText("❌ Embedding failed.");
@@ -333,7 +477,7 @@ public class MainUI {
                 } catch (Exception ex) {
                     Platform.runLater(() -> resultArea.setText("Error: " + ex.getMessage()));
                 }
-            }).start();
+            });
 
         } catch (Exception ex) {
             resultArea.setText("Error: " + ex.getMessage());
@@ -364,23 +508,35 @@ public class MainUI {
                 failedExtractionCount = 0;
             }
             
-            String message = stegoController.extractMessage(inputPath);
-
-            if (message == null || message.isEmpty()) {
-                handleExtractionFailure(inputPath);
-                return;
+            if (extractTask != null) {
+                extractTask.cancel();
             }
-
-            // Try to decrypt with the provided key
-            try {
-                String displayMessage = MessageEncryption.decrypt(message, encryptionKey);
+            Task<String> task = new Task<>() {
+                @Override
+                protected String call() {
+                    Payload payload = extractedPayload(inputPath);
+                    if (payload.data().length == 0) {
+                        throw new IllegalStateException("No embedded message found.");
+                    }
+                    return new String(stegoController.openSecret(payload, encryptionKey), StandardCharsets.UTF_8);
+                }
+            };
+            task.setOnSucceeded(e -> {
                 // Success - reset counter
                 failedExtractionCount = 0;
+                progress.setProgress(0);
                 stepLabel.setText("🔍 Message extracted! (AES-256 decrypted)");
-                resultArea.setText("✅ Extracted Message (AES-256 decrypted):\n\n" + displayMessage);
-            } catch (Exception ex) {
+                resultArea.setText("✅ Extracted Message (AES-256 decrypted):\n\n" + task.getValue());
+            });
+            task.setOnFailed(e -> {
+                progress.setProgress(0);
                 handleExtractionFailure(inputPath);
-            }
+            });
+            task.setOnCancelled(e -> progress.setProgress(0));
+            extractTask = task;
+            stepLabel.setText("🔍 Extracting and decrypting message...");
+            progress.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+            submit(task);
             
         } catch (Exception ex) {
             String folder = sourceFolderField.getText().trim();
@@ -395,6 +551,41 @@ public class MainUI {
         }
     }
     
+    /**
+     * The raw payload embedded in the image at {@code inputPath}, reusing the
+     * last extraction while the file is unchanged. Runs on a worker thread.
+     */
+    private Payload extractedPayload(String inputPath) {
+        long lastModified = new File(inputPath).lastModified();
+        ExtractedPayload cached = cachedPayload;
+        if (cached != null && cached.path().equals(inputPath) && cached.lastModified() == lastModified) {
+            return cached.payload();
+        }
+        Payload payload = stegoController.readPayload(inputPath);
+        if (payload == null) {
+            throw new IllegalStateException("Extraction failed.");
+        }
+        cachedPayload = new ExtractedPayload(inputPath, lastModified, payload);
+        return payload;
+    }
+
+    private void forgetPayload(String path) {
+        ExtractedPayload cached = cachedPayload;
+        if (cached != null && cached.path().equals(path)) {
+            cachedPayload = null;
+        }
+    }
+
+    private void submit(Runnable work) {
+        try {
+            workers.execute(work);
+        } catch (RejectedExecutionException ex) {
+            progress.setProgress(0);
+            stepLabel.setText("⏳ Busy");
+            resultArea.setText("⚠ Still working on earlier requests, please try again in a moment.");
+        }
+    }
+
     private void handleExtractionFailure(String filePath) {
         failedExtractionCount++;
         
@@ -402,7 +593,9 @@ public class MainUI {
             File fileToDelete = new File(filePath);
             if (fileToDelete.exists()) {
                 boolean deleted = fileToDelete.delete();
+                forgetPayload(filePath);
                 if (deleted) {
+                    thumbnails.remove(filePath);
                     stepLabel.setText("🗑️ File deleted after " + MAX_FAILED_ATTEMPTS + " failed attempts");
                     resultArea.setText("❌ Decryption Failed, Bad Key or Message Does Not Exist.\n\n" +
                                      "⚠️ Maximum failed attempts (" + MAX_FAILED_ATTEMPTS + ") reached.\n" +
@@ -428,4 +621,7 @@ public class MainUI {
                              "File will be deleted after " + remainingAttempts + " more failed attempt(s).");
         }
     }
+
+    private record ExtractedPayload(String path, long lastModified, Payload payload) {
+    }
 }
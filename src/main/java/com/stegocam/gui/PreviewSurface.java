@@ -0,0 +1,97 @@
+package com.stegocam.gui;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.nio.IntBuffer;
+
+/**
+ * An opaque image whose pixels live in one {@code int[]} shared by a JavaFX
+ * {@link PixelBuffer}, which reads it as premultiplied ARGB, and a
+ * {@code TYPE_INT_RGB} {@link BufferedImage}, which the engine writes. Every
+ * pixel keeps alpha 0xFF, where premultiplied and straight ARGB agree, and
+ * the INT_RGB colour model ignores that byte, so both sides see the same
+ * colours without copying anything.
+ * <p>
+ * The engine writes from a worker thread while JavaFX may be rendering, so a
+ * preview can briefly show a half-written chunk until the next update.
+ */
+final class PreviewSurface {
+
+    private static final DirectColorModel RGB = new DirectColorModel(24, 0x00FF0000, 0x0000FF00, 0x000000FF);
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    private final PixelBuffer<IntBuffer> pixelBuffer;
+    private final WritableImage fxImage;
+    private final BufferedImage image;
+
+    private PreviewSurface(int width, int height, int[] pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+        this.pixelBuffer = new PixelBuffer<>(width, height, IntBuffer.wrap(pixels), PixelFormat.getIntArgbPreInstance());
+        this.fxImage = new WritableImage(pixelBuffer);
+        WritableRaster raster = Raster.createPackedRaster(
+            new DataBufferInt(pixels, pixels.length), width, height, width, RGB.getMasks(), null);
+        this.image = new BufferedImage(RGB, raster, false, null);
+    }
+
+    /**
+     * Whether {@code image} can be shown through a surface without losing
+     * anything, i.e. it has no transparency.
+     */
+    static boolean supports(BufferedImage image) {
+        return image.getTransparency() == Transparency.OPAQUE;
+    }
+
+    /**
+     * A surface holding the pixels of an opaque image.
+     */
+    static PreviewSurface copyOf(BufferedImage source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int[] pixels = source.getRGB(0, 0, width, height, new int[width * height], 0, width);
+        return new PreviewSurface(width, height, pixels);
+    }
+
+    /**
+     * An independent surface with the same pixels.
+     */
+    PreviewSurface copy() {
+        return new PreviewSurface(width, height, pixels.clone());
+    }
+
+    /**
+     * The {@code TYPE_INT_RGB} view that the engine embeds into.
+     */
+    BufferedImage image() {
+        return image;
+    }
+
+    /**
+     * The JavaFX view of the same pixels.
+     */
+    WritableImage fxImage() {
+        return fxImage;
+    }
+
+    /**
+     * Tell JavaFX that rows {@code [firstRow, endRow)} have changed. Must be
+     * called on the FX thread.
+     */
+    void rowsChanged(int firstRow, int endRow) {
+        if (firstRow < endRow) {
+            pixelBuffer.updateBuffer(buffer -> new Rectangle2D(0, firstRow, width, endRow - firstRow));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.stegocam.gui;
+
+import com.stegocam.stego.ProgressListener;
+import javafx.application.Platform;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mirrors engine progress into an image view and a progress bar. Engine
+ * callbacks only widen a pending range of dirty rows; at most one FX update
+ * is queued at a time and updates are at least {@link #UPDATE_INTERVAL_NANOS}
+ * apart. Each update copies just the rows that changed since the last one,
+ * or, when the engine writes into a {@link PreviewSurface}, copies nothing and
+ * only tells JavaFX which rows to refresh.
+ */
+final class ProgressPreview implements ProgressListener {
+
+    private static final long UPDATE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int ROWS_PER_COPY = 64;
+
+    private final ImageView view;
+    private final ProgressBar progressBar;
+    private final PreviewSurface surface;
+
+    // Updated from engine threads, taken on the FX thread
+    private BufferedImage image;
+    private int dirtyFrom = Integer.MAX_VALUE;
+    private int dirtyTo;
+    private double fraction;
+    private boolean updateQueued;
+    private long lastUpdateNanos;
+
+    // FX thread only
+    private WritableImage fxImage;
+    private int[] rowBuffer;
+
+    ProgressPreview(ImageView view, ProgressBar progressBar) {
+        this(view, progressBar, null);
+    }
+
+    /**
+     * A preview of an embed into {@code surface}'s image, which the view
+     * shows without a copy of its own.
+     */
+    ProgressPreview(ImageView view, ProgressBar progressBar, PreviewSurface surface) {
+        this.view = view;
+        this.progressBar = progressBar;
+        this.surface = surface;
+    }
+
+    /**
+     * Show all of {@code image} straight away, e.g. the cover before
+     * embedding starts. May be called from any thread.
+     */
+    void show(BufferedImage image) {
+        update(image, 0, image.getHeight(), 0, true);
+    }
+
+    @Override
+    public void progress(BufferedImage image, int firstRow, int endRow, long bitsDone, long totalBits) {
+        update(image, firstRow, endRow, totalBits == 0 ? 1 : (double) bitsDone / totalBits, false);
+    }
+
+    /**
+     * Queue whatever is still pending, ignoring the rate limit. Call once the
+     * engine is done.
+     */
+    void flush() {
+        synchronized (this) {
+            if (updateQueued) {
+                return;
+            }
+            updateQueued = true;
+        }
+        Platform.runLater(this::apply);
+    }
+
+    private void update(BufferedImage source, int firstRow, int endRow, double done, boolean immediate) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            image = source;
+            dirtyFrom = Math.min(dirtyFrom, firstRow);
+            dirtyTo = Math.max(dirtyTo, endRow);
+            fraction = Math.max(fraction, done);
+            if (updateQueued || (!immediate && now - lastUpdateNanos < UPDATE_INTERVAL_NANOS)) {
+                return;
+            }
+            updateQueued = true;
+            lastUpdateNanos = now;
+        }
+        Platform.runLater(this::apply);
+    }
+
+    private void apply() {
+        BufferedImage source;
+        int from;
+        int to;
+        double done;
+        synchronized (this) {
+            source = image;
+            from = dirtyFrom;
+            to = dirtyTo;
+            done = fraction;
+            dirtyFrom = Integer.MAX_VALUE;
+            dirtyTo = 0;
+            updateQueued = false;
+        }
+        if (source == null) {
+            return;
+        }
+        if (surface != null) {
+            surface.rowsChanged(from, to);
+            showImage(surface.fxImage());
+        } else {
+            copyRows(source, from, to);
+            showImage(fxImage);
+        }
+        progressBar.setProgress(done);
+    }
+
+    private void copyRows(BufferedImage source, int from, int to) {
+        int width = source.getWidth();
+        if (fxImage == null || fxImage.getWidth() != width || fxImage.getHeight() != source.getHeight()) {
+            fxImage = new WritableImage(width, source.getHeight());
+            rowBuffer = new int[width * ROWS_PER_COPY];
+        }
+        for (int y = from; y < to; y += ROWS_PER_COPY) {
+            int rows = Math.min(ROWS_PER_COPY, to - y);
+            source.getRGB(0, y, width, rows, rowBuffer, 0, width);
+            fxImage.getPixelWriter().setPixels(0, y, width, rows, PixelFormat.getIntArgbInstance(), rowBuffer, 0, width);
+        }
+    }
+
+    private void showImage(WritableImage image) {
+        if (view.getImage() != image) {
+            view.setImage(image);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.stegocam.io;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Vector;
+import java.util.function.Consumer;
+
+/**
+ * A read-once {@link RenderedImage} that decodes its source in horizontal
+ * bands as a writer asks for their rows, passing each band through a
+ * transform first. Only the current band is held in memory, so rows must be
+ * requested from the top down and never span two bands; the PNG writer pulls
+ * one row at a time and meets both.
+ */
+final class BandedImage implements RenderedImage {
+
+    private final ImageReader reader;
+    private final ImageReadParam param;
+    private final Consumer<BufferedImage> transform;
+    private final int width;
+    private final int height;
+    private final int bandRows;
+    private BufferedImage band;
+    private int bandY;
+
+    BandedImage(ImageReader reader, int bandRows, Consumer<BufferedImage> transform) throws IOException {
+        this.reader = reader;
+        this.param = reader.getDefaultReadParam();
+        this.transform = transform;
+        this.width = reader.getWidth(0);
+        this.height = reader.getHeight(0);
+        this.bandRows = Math.min(bandRows, height);
+        loadBand(0);
+    }
+
+    private void loadBand(int y) throws IOException {
+        // Let the previous band go before decoding the next
+        band = null;
+        param.setSourceRegion(new Rectangle(0, y, width, Math.min(bandRows, height - y)));
+        BufferedImage next = reader.read(0, param);
+        transform.accept(next);
+        band = next;
+        bandY = y;
+    }
+
+    /**
+     * Move forward to the band holding row {@code y}.
+     */
+    private void seekRow(int y) {
+        if (y < bandY || y >= height) {
+            throw new IllegalStateException("Row " + y + " is no longer available; bands are read once, top down.");
+        }
+        try {
+            while (y >= bandY + band.getHeight()) {
+                loadBand(bandY + band.getHeight());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Raster getData(Rectangle rect) {
+        seekRow(rect.y);
+        if (rect.y + rect.height > bandY + band.getHeight()) {
+            throw new IllegalStateException("Requested rows span more than one band.");
+        }
+        return band.getRaster().createChild(rect.x, rect.y - bandY, rect.width, rect.height, rect.x, rect.y, null);
+    }
+
+    @Override
+    public Raster getTile(int tileX, int tileY) {
+        seekRow(tileY * bandRows);
+        return band.getRaster().createChild(0, 0, width, band.getHeight(), 0, bandY, null);
+    }
+
+    @Override
+    public Raster getData() {
+        throw new UnsupportedOperationException("A banded image is never held in memory whole.");
+    }
+
+    @Override
+    public WritableRaster copyData(WritableRaster raster) {
+        if (raster == null) {
+            throw new UnsupportedOperationException("A banded image is never held in memory whole.");
+        }
+        raster.setRect(getData(raster.getBounds()));
+        return raster;
+    }
+
+    @Override
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return Image.UndefinedProperty;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return band.getColorModel();
+    }
+
+    @Override
+    public SampleModel getSampleModel() {
+        return band.getSampleModel().createCompatibleSampleModel(width, bandRows);
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public int getNumXTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getNumYTiles() {
+        return (height + bandRows - 1) / bandRows;
+    }
+
+    @Override
+    public int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return width;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return bandRows;
+    }
+
+    @Override
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridYOffset() {
+        return 0;
+    }
+}
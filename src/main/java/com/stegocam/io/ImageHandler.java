@@ -1,11 +1,25 @@
 package com.stegocam.io;
 
+import com.stegocam.util.ImageUtil;
+
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import java.awt.Graphics2D;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.function.Consumer;
 
 /**
  * Handles image input/output operations
@@ -29,6 +43,110 @@ public class ImageHandler {
         }
     }
     
+    /**
+     * Load a reduced copy of an image for a view of at most
+     * {@code maxWidth} x {@code maxHeight} pixels. The decoder skips whole
+     * rows and columns, so the full-resolution image is never held in memory.
+     */
+    public BufferedImage loadPreview(String filePath, int maxWidth, int maxHeight) {
+        return loadPreview(filePath, null, maxWidth, maxHeight);
+    }
+
+    /**
+     * Like {@link #loadPreview(String, int, int)}, but only decodes the part of
+     * the image inside {@code region}, or all of it when {@code region} is null.
+     */
+    public BufferedImage loadPreview(String filePath, Rectangle region, int maxWidth, int maxHeight) {
+        if (maxWidth <= 0 || maxHeight <= 0) {
+            throw new IllegalArgumentException("Preview size must be positive");
+        }
+        File file = new File(filePath);
+        if (!file.exists()) {
+            System.err.println("File does not exist: " + filePath);
+            return null;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = openReader(input, filePath);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                Rectangle bounds = new Rectangle(reader.getWidth(0), reader.getHeight(0));
+                Rectangle source = region == null ? bounds : bounds.intersection(region);
+                if (source.isEmpty()) {
+                    throw new IllegalArgumentException("Preview region lies outside the image");
+                }
+                int step = previewSubsampling(source.width, source.height, maxWidth, maxHeight);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(source);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading preview: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read an image's dimensions and pixel layout from its header without
+     * decoding it. Returns null when the file cannot be read.
+     */
+    public ImageInfo probeImage(String filePath) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            System.err.println("File does not exist: " + filePath);
+            return null;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = openReader(input, filePath);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                ImageTypeSpecifier type = reader.getRawImageType(0);
+                if (type == null) {
+                    Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+                    type = types.hasNext() ? types.next() : null;
+                }
+                return ImageInfo.of(reader.getFormatName().toLowerCase(Locale.ROOT), reader.getWidth(0),
+                    reader.getHeight(0), type == null ? null : type.getColorModel());
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            System.err.println("Error probing image: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * A reader positioned on {@code input}, or null when no installed reader
+     * understands it.
+     */
+    private ImageReader openReader(ImageInputStream input, String filePath) {
+        Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+        if (readers == null || !readers.hasNext()) {
+            System.err.println("No reader for image: " + filePath);
+            return null;
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+    /**
+     * The smallest subsampling step that fits a {@code width} x {@code height}
+     * source into {@code maxWidth} x {@code maxHeight}.
+     */
+    static int previewSubsampling(int width, int height, int maxWidth, int maxHeight) {
+        int horizontal = (width + maxWidth - 1) / maxWidth;
+        int vertical = (height + maxHeight - 1) / maxHeight;
+        return Math.max(1, Math.max(horizontal, vertical));
+    }
+
     /**
      * Save an image to file
      */
@@ -52,6 +170,62 @@ public class ImageHandler {
         }
     }
     
+    /**
+     * Copy the image at {@code inputPath} to a PNG at {@code outputPath} in
+     * horizontal bands of at most {@code bandRows} rows, passing each band to
+     * {@code transform} to change in place before it is written. Only one band
+     * is in memory at a time, so images far larger than the heap can be
+     * processed.
+     * <p>
+     * Readers that seek straight to a region, such as those for striped or
+     * tiled TIFF, decode each band once. The PNG reader inflates the rows
+     * above every band again, so fewer, taller bands are faster there.
+     */
+    public boolean transcodeInBands(String inputPath, String outputPath, int bandRows,
+                                    Consumer<BufferedImage> transform) {
+        if (bandRows <= 0) {
+            throw new IllegalArgumentException("Band height must be positive");
+        }
+        File file = new File(inputPath);
+        if (!file.exists()) {
+            System.err.println("File does not exist: " + inputPath);
+            return false;
+        }
+        File output = new File(outputPath);
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = openReader(input, inputPath);
+            if (reader == null) {
+                return false;
+            }
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+            try {
+                BandedImage image = new BandedImage(reader, bandRows, transform);
+                File parent = output.getParentFile();
+                if (parent != null && !parent.exists()) {
+                    parent.mkdirs();
+                }
+                Files.deleteIfExists(output.toPath());
+                try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+                    writer.setOutput(stream);
+                    ImageWriteParam param = writer.getDefaultWriteParam();
+                    if (param.canWriteProgressive()) {
+                        // Interlaced output would ask for every row seven times
+                        param.setProgressiveMode(ImageWriteParam.MODE_DISABLED);
+                    }
+                    writer.write(null, new IIOImage(image, null, null), param);
+                }
+                return true;
+            } finally {
+                writer.dispose();
+                reader.dispose();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error transcoding image: " + e.getMessage());
+            output.delete();
+            return false;
+        }
+    }
+
     /**
      * Get image format from file extension
      */
@@ -100,28 +274,20 @@ public class ImageHandler {
      * Get image dimensions
      */
     public String getImageDimensions(String filePath) {
-        BufferedImage image = loadImage(filePath);
-        if (image == null) {
+        ImageInfo info = probeImage(filePath);
+        if (info == null) {
             return "Unable to load image";
         }
-        return image.getWidth() + "x" + image.getHeight();
+        return info.width() + "x" + info.height();
     }
     
     /**
-     * Create a copy of an image
+     * Create a copy of an image, keeping its type and colour model
      */
     public BufferedImage copyImage(BufferedImage original) {
         if (original == null) {
             throw new IllegalArgumentException("Original image cannot be null");
         }
-        int imageType = original.getType() == BufferedImage.TYPE_CUSTOM ? BufferedImage.TYPE_INT_ARGB : original.getType();
-        BufferedImage copy = new BufferedImage(original.getWidth(), original.getHeight(), imageType);
-        Graphics2D graphics = copy.createGraphics();
-        try {
-            graphics.drawImage(original, 0, 0, null);
-        } finally {
-            graphics.dispose();
-        }
-        return copy;
+        return ImageUtil.copy(original);
     }
 }
@@ -0,0 +1,52 @@
+package com.stegocam.io;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+
+/**
+ * What an image file's header says about it, read by
+ * {@link ImageHandler#probeImage(String)} without decoding any pixels.
+ *
+ * @param format     reader format name, e.g. {@code png}
+ * @param bitDepth   bits per colour component, or per index for indexed images
+ * @param colourType how pixels are stored
+ * @param hasAlpha   whether pixels carry an alpha component
+ */
+public record ImageInfo(String format, int width, int height, int bitDepth, ColourType colourType, boolean hasAlpha) {
+
+    public enum ColourType {
+        GRAYSCALE,
+        RGB,
+        INDEXED,
+        OTHER
+    }
+
+    /**
+     * Describe an image from its dimensions and the colour model its reader
+     * reports, which may be null when the reader cannot tell.
+     */
+    static ImageInfo of(String format, int width, int height, ColorModel colorModel) {
+        if (colorModel == null) {
+            return new ImageInfo(format, width, height, 0, ColourType.OTHER, false);
+        }
+        ColourType colourType;
+        int bitDepth;
+        if (colorModel instanceof IndexColorModel) {
+            colourType = ColourType.INDEXED;
+            bitDepth = colorModel.getPixelSize();
+        } else {
+            colourType = switch (colorModel.getColorSpace().getType()) {
+                case ColorSpace.TYPE_GRAY -> ColourType.GRAYSCALE;
+                case ColorSpace.TYPE_RGB -> ColourType.RGB;
+                default -> ColourType.OTHER;
+            };
+            bitDepth = colorModel.getComponentSize(0);
+        }
+        return new ImageInfo(format, width, height, bitDepth, colourType, colorModel.hasAlpha());
+    }
+
+    public long pixelCount() {
+        return (long) width * height;
+    }
+}
@@ -0,0 +1,180 @@
+package com.stegocam.io;
+
+import com.stegocam.config.AppConfig;
+import com.stegocam.util.LoggerUtil;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * On-disk cache of small PNG thumbnails, so browsing a folder of large covers
+ * only decodes each of them once. Entries are named after the image's absolute
+ * path plus its size and modification time, so editing a file replaces its
+ * entry. The cache keeps at most a fixed number of entries, dropping the least
+ * recently used ones and any not used for a while.
+ * Failing to write an entry is not an error, the thumbnail is still returned.
+ */
+public class ThumbnailCache {
+
+    private static final int NAME_BYTES = 16;
+
+    private final ImageHandler imageHandler;
+    private final Path directory;
+    private final int size;
+    private final int maxEntries;
+    private final long maxAgeMillis;
+
+    public ThumbnailCache() {
+        this(new ImageHandler(), Path.of(System.getProperty("user.home"), AppConfig.THUMBNAIL_CACHE_DIR),
+            AppConfig.THUMBNAIL_SIZE);
+    }
+
+    public ThumbnailCache(ImageHandler imageHandler, Path directory, int size) {
+        this(imageHandler, directory, size, AppConfig.THUMBNAIL_CACHE_MAX_ENTRIES,
+            Duration.ofDays(AppConfig.THUMBNAIL_CACHE_MAX_AGE_DAYS));
+    }
+
+    public ThumbnailCache(ImageHandler imageHandler, Path directory, int size, int maxEntries, Duration maxAge) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Thumbnail size must be positive");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Thumbnail cache size must be positive");
+        }
+        if (maxAge.isNegative() || maxAge.isZero()) {
+            throw new IllegalArgumentException("Thumbnail cache lifetime must be positive");
+        }
+        this.imageHandler = imageHandler;
+        this.directory = directory;
+        this.size = size;
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = maxAge.toMillis();
+    }
+
+    /**
+     * A thumbnail of at most {@code size} x {@code size} pixels for the image at
+     * {@code filePath}, or null when it cannot be read.
+     */
+    public BufferedImage getThumbnail(String filePath) {
+        Path source = Path.of(filePath).toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        } catch (IOException e) {
+            LoggerUtil.warn("File does not exist: " + filePath);
+            return null;
+        }
+        String pathKey = hash(source.toString());
+        Path entry = directory.resolve(pathKey + "-" + hash(attributes.size() + "\n"
+            + attributes.lastModifiedTime().toMillis() + "\n" + size) + ".png");
+        if (Files.isRegularFile(entry)) {
+            try {
+                BufferedImage cached = ImageIO.read(entry.toFile());
+                if (cached != null) {
+                    // The modification time of an entry records its last use
+                    Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                    return cached;
+                }
+            } catch (IOException e) {
+                // Unreadable entry, rebuild it below
+            }
+        }
+        BufferedImage thumbnail = imageHandler.loadPreview(source.toString(), size, size);
+        if (thumbnail != null) {
+            deleteEntries(pathKey);
+            store(entry, thumbnail);
+            prune();
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Drop the thumbnail of the image at {@code filePath}, for instance once
+     * the image itself has been deleted.
+     */
+    public void remove(String filePath) {
+        deleteEntries(hash(Path.of(filePath).toAbsolutePath().normalize().toString()));
+    }
+
+    private void store(Path entry, BufferedImage thumbnail) {
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "thumb", ".tmp");
+            try {
+                if (ImageIO.write(thumbnail, "png", temp.toFile())) {
+                    Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            LoggerUtil.warn("Error caching thumbnail: " + e.getMessage());
+        }
+    }
+
+    private void deleteEntries(String pathKey) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, pathKey + "-*.png")) {
+            for (Path entry : entries) {
+                Files.deleteIfExists(entry);
+            }
+        } catch (IOException e) {
+            LoggerUtil.warn("Error removing thumbnail: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Delete entries unused for longer than the maximum age, then the least
+     * recently used ones beyond the size limit.
+     */
+    private void prune() {
+        List<CachedEntry> entries = new ArrayList<>();
+        long expired = System.currentTimeMillis() - maxAgeMillis;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.png")) {
+            for (Path entry : stream) {
+                long lastUsed = Files.getLastModifiedTime(entry).toMillis();
+                if (lastUsed < expired) {
+                    Files.deleteIfExists(entry);
+                } else {
+                    entries.add(new CachedEntry(entry, lastUsed));
+                }
+            }
+            entries.sort(Comparator.comparingLong(CachedEntry::lastUsed));
+            for (int i = 0; i < entries.size() - maxEntries; i++) {
+                Files.deleteIfExists(entries.get(i).path());
+            }
+        } catch (IOException e) {
+            LoggerUtil.warn("Error pruning thumbnail cache: " + e.getMessage());
+        }
+    }
+
+    private static String hash(String identity) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(identity.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, NAME_BYTES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record CachedEntry(Path path, long lastUsed) {
+    }
+}
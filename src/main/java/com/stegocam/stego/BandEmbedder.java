@@ -0,0 +1,50 @@
+package com.stegocam.stego;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Embeds one payload into a cover that arrives as consecutive full-width
+ * bands of rows, top to bottom, so the whole cover never has to be in
+ * memory. Created by {@link StegoEngine#embedInBands}; the result is pixel
+ * for pixel the same as embedding into the complete image.
+ */
+public final class BandEmbedder {
+
+    private final StegoEngine engine;
+    private final int width;
+    private final int height;
+    private final BitReader bits;
+    private int nextRow;
+
+    BandEmbedder(StegoEngine engine, int width, int height, BitReader bits) {
+        this.engine = engine;
+        this.width = width;
+        this.height = height;
+        this.bits = bits;
+    }
+
+    /**
+     * Embed the part of the payload that belongs in {@code band}, which holds
+     * the rows directly below the previous band, in place.
+     */
+    public void embed(BufferedImage band) {
+        if (band.getWidth() != width) {
+            throw new IllegalArgumentException("Bands must span the full image width.");
+        }
+        if (band.getHeight() > height - nextRow) {
+            throw new IllegalArgumentException("Band runs past the bottom of the image.");
+        }
+        if (bits.remainingBits() > 0) {
+            engine.embedBand(band, bits);
+        }
+        nextRow += band.getHeight();
+    }
+
+    /**
+     * Whether the whole payload has been embedded; later bands pass through
+     * unchanged.
+     */
+    public boolean isComplete() {
+        return bits.remainingBits() == 0;
+    }
+}
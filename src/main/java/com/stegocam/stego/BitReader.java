@@ -0,0 +1,131 @@
+package com.stegocam.stego;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Streams bits (MSB first) out of one or more byte buffers without expanding
+ * them into an intermediate array. Buffers are consumed in order from their
+ * current position to their limit using absolute reads, so the buffers
+ * themselves are not modified. A reader can be {@link #reset} and reused.
+ */
+final class BitReader {
+
+    private static final ByteBuffer[] NO_SOURCES = new ByteBuffer[0];
+
+    private ByteBuffer[] sources;
+    private int sourceIndex;
+    private int position;
+    private long remainingBits;
+    private int currentByte;
+    private int bitsInCurrentByte;
+
+    BitReader() {
+        reset(NO_SOURCES);
+    }
+
+    BitReader(byte[] bytes) {
+        this(ByteBuffer.wrap(Objects.requireNonNull(bytes, "bytes")));
+    }
+
+    BitReader(ByteBuffer... sources) {
+        reset(Objects.requireNonNull(sources, "sources").clone());
+    }
+
+    /**
+     * Start over on {@code sources}. The array is kept rather than copied, and
+     * neither it nor the buffers may change until reading is finished.
+     */
+    BitReader reset(ByteBuffer... sources) {
+        long totalBytes = 0;
+        for (ByteBuffer source : sources) {
+            totalBytes += Objects.requireNonNull(source, "source").remaining();
+        }
+        this.sources = sources;
+        this.sourceIndex = 0;
+        this.position = sources.length > 0 ? sources[0].position() : 0;
+        this.remainingBits = totalBytes * 8L;
+        this.currentByte = 0;
+        this.bitsInCurrentByte = 0;
+        return this;
+    }
+
+    long remainingBits() {
+        return remainingBits;
+    }
+
+    /**
+     * Read the next {@code count} bits (at most 8) as an unsigned value whose
+     * least significant bit is the last bit read.
+     */
+    int readBits(int count) {
+        if (count < 0 || count > 8 || count > remainingBits) {
+            throw new IllegalArgumentException("Cannot read " + count + " bits; " + remainingBits + " remaining.");
+        }
+        int value = 0;
+        int pending = count;
+        while (pending > 0) {
+            if (bitsInCurrentByte == 0) {
+                currentByte = nextByte();
+                bitsInCurrentByte = 8;
+            }
+            int take = Math.min(pending, bitsInCurrentByte);
+            bitsInCurrentByte -= take;
+            value = (value << take) | ((currentByte >>> bitsInCurrentByte) & ((1 << take) - 1));
+            pending -= take;
+        }
+        remainingBits -= count;
+        return value;
+    }
+
+    /**
+     * Read the next 8 bits as an unsigned value, skipping the bit assembly
+     * when the stream is byte aligned.
+     */
+    int readByte() {
+        if (bitsInCurrentByte != 0 || remainingBits < 8) {
+            return readBits(8);
+        }
+        remainingBits -= 8;
+        return nextByte();
+    }
+
+    /**
+     * Read {@code length} whole bytes into {@code destination}.
+     */
+    void readBytes(byte[] destination, int offset, int length) {
+        if (bitsInCurrentByte != 0) {
+            for (int i = 0; i < length; i++) {
+                destination[offset + i] = (byte) readBits(8);
+            }
+            return;
+        }
+        if (length * 8L > remainingBits) {
+            throw new IllegalArgumentException("Cannot read " + length + " bytes; " + remainingBits + " bits remaining.");
+        }
+        remainingBits -= length * 8L;
+        while (length > 0) {
+            ByteBuffer source = sources[sourceIndex];
+            int run = Math.min(length, source.limit() - position);
+            source.get(position, destination, offset, run);
+            position += run;
+            offset += run;
+            length -= run;
+            if (position >= source.limit() && length > 0) {
+                nextSource();
+            }
+        }
+    }
+
+    private int nextByte() {
+        while (position >= sources[sourceIndex].limit()) {
+            nextSource();
+        }
+        return sources[sourceIndex].get(position++) & 0xFF;
+    }
+
+    private void nextSource() {
+        sourceIndex++;
+        position = sources[sourceIndex].position();
+    }
+}
@@ -0,0 +1,132 @@
+package com.stegocam.stego;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Packs bits (MSB first) straight into one or more byte buffers, the
+ * counterpart of {@link BitReader}. The writer accepts exactly as many bits as
+ * the buffers have bytes remaining, filling them in order with absolute puts;
+ * a byte is stored as soon as its eighth bit arrives. Buffer positions are
+ * left unchanged, and a writer can be {@link #reset} and reused.
+ */
+final class BitWriter {
+
+    private static final ByteBuffer[] NO_DESTINATIONS = new ByteBuffer[0];
+
+    private ByteBuffer[] destinations;
+    private int destinationIndex;
+    private int position;
+    private long remainingBits;
+    private int currentByte;
+    private int bitsInCurrentByte;
+
+    BitWriter() {
+        reset(NO_DESTINATIONS);
+    }
+
+    BitWriter(byte[] destination) {
+        this(ByteBuffer.wrap(Objects.requireNonNull(destination, "destination")));
+    }
+
+    BitWriter(ByteBuffer... destinations) {
+        reset(Objects.requireNonNull(destinations, "destinations").clone());
+    }
+
+    /**
+     * Start over on {@code destinations}. The array is kept rather than
+     * copied, and neither it nor the buffer bounds may change until writing is
+     * finished.
+     */
+    BitWriter reset(ByteBuffer... destinations) {
+        long totalBytes = 0;
+        for (ByteBuffer destination : destinations) {
+            totalBytes += Objects.requireNonNull(destination, "destination").remaining();
+        }
+        this.destinations = destinations;
+        this.destinationIndex = 0;
+        this.position = destinations.length > 0 ? destinations[0].position() : 0;
+        this.remainingBits = totalBytes * 8L;
+        this.currentByte = 0;
+        this.bitsInCurrentByte = 0;
+        return this;
+    }
+
+    long remainingBits() {
+        return remainingBits;
+    }
+
+    /**
+     * Append the low {@code count} bits (at most 8) of {@code value}, most
+     * significant first. Higher bits of {@code value} are ignored.
+     */
+    void writeBits(int value, int count) {
+        if (count < 0 || count > 8 || count > remainingBits) {
+            throw new IllegalArgumentException("Cannot write " + count + " bits; " + remainingBits + " remaining.");
+        }
+        int pending = count;
+        while (pending > 0) {
+            int take = Math.min(pending, 8 - bitsInCurrentByte);
+            pending -= take;
+            currentByte = (currentByte << take) | ((value >>> pending) & ((1 << take) - 1));
+            bitsInCurrentByte += take;
+            if (bitsInCurrentByte == 8) {
+                putByte(currentByte);
+                currentByte = 0;
+                bitsInCurrentByte = 0;
+            }
+        }
+        remainingBits -= count;
+    }
+
+    /**
+     * Append 8 bits, storing them directly when the stream is byte aligned.
+     */
+    void writeByte(int value) {
+        if (bitsInCurrentByte != 0 || remainingBits < 8) {
+            writeBits(value, 8);
+            return;
+        }
+        putByte(value);
+        remainingBits -= 8;
+    }
+
+    /**
+     * Append {@code length} whole bytes from {@code source}.
+     */
+    void writeBytes(byte[] source, int offset, int length) {
+        if (bitsInCurrentByte != 0) {
+            for (int i = 0; i < length; i++) {
+                writeBits(source[offset + i], 8);
+            }
+            return;
+        }
+        if (length * 8L > remainingBits) {
+            throw new IllegalArgumentException("Cannot write " + length + " bytes; " + remainingBits + " bits remaining.");
+        }
+        remainingBits -= length * 8L;
+        while (length > 0) {
+            ByteBuffer destination = destinations[destinationIndex];
+            int run = Math.min(length, destination.limit() - position);
+            destination.put(position, source, offset, run);
+            position += run;
+            offset += run;
+            length -= run;
+            if (position >= destination.limit() && length > 0) {
+                nextDestination();
+            }
+        }
+    }
+
+    private void putByte(int value) {
+        while (position >= destinations[destinationIndex].limit()) {
+            nextDestination();
+        }
+        destinations[destinationIndex].put(position++, (byte) value);
+    }
+
+    private void nextDestination() {
+        destinationIndex++;
+        position = destinations[destinationIndex].position();
+    }
+}
@@ -0,0 +1,204 @@
+package com.stegocam.stego;
+
+import com.stegocam.util.ImageUtil;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Reusable working memory for {@link StegoEngine}. A context keeps the
+ * embedding target image and the engine's scratch buffers between calls, so a
+ * steady stream of embeds into same-sized covers allocates next to nothing
+ * on the serial path.
+ * <p>
+ * The image returned by {@link StegoEngine#embedMessage(BufferedImage, byte[], EngineContext)}
+ * belongs to the context and is overwritten by the next embed through it;
+ * copy it if it has to outlive that call. Contexts are not thread-safe, so
+ * keep one per thread, for example via {@link #forCurrentThread()}.
+ */
+public final class EngineContext {
+
+    private static final ThreadLocal<EngineContext> PER_THREAD = ThreadLocal.withInitial(EngineContext::new);
+
+    private final byte[] header = new byte[PayloadHeader.LONG_SIZE];
+    private final byte[] trailer = new byte[PayloadHeader.TRAILER_SIZE];
+    private final ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+    private final ByteBuffer legacyHeaderBuffer = ByteBuffer.wrap(header, 0, Integer.BYTES);
+    private final ByteBuffer trailerBuffer = ByteBuffer.wrap(trailer);
+    private final ByteBuffer[] headerOnly = {headerBuffer};
+    private final ByteBuffer[] single = new ByteBuffer[1];
+    private final ByteBuffer[] framed = new ByteBuffer[3];
+    private final ByteBuffer[] legacy = new ByteBuffer[2];
+    private final ByteBuffer[] pair = new ByteBuffer[2];
+    private final CRC32C crc = new CRC32C();
+    private final BitReader reader = new BitReader();
+    private final BitWriter writer = new BitWriter();
+    private byte[] samples;
+    private ByteBuffer staging;
+    private BufferedImage target;
+    private SampleRaster targetRaster;
+    private ProgressListener progressListener;
+
+    /**
+     * The context owned by the calling thread.
+     */
+    public static EngineContext forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    /**
+     * Report the progress of later embeds and extractions through this
+     * context to {@code listener}, or stop reporting when it is null.
+     */
+    public void setProgressListener(ProgressListener listener) {
+        this.progressListener = listener;
+    }
+
+    ProgressListener progressListener() {
+        return progressListener;
+    }
+
+    /**
+     * Drop the pooled target image so its memory can be reclaimed. The next
+     * embed allocates a fresh one.
+     */
+    public void releaseTarget() {
+        target = null;
+        targetRaster = null;
+    }
+
+    /**
+     * Scratch space for the payload header, of up to
+     * {@link PayloadHeader#LONG_SIZE} bytes, or for the 32-bit length prefix
+     * of a legacy payload in its first four bytes.
+     */
+    byte[] header() {
+        return header;
+    }
+
+    /**
+     * Scratch space for the CRC32C trailer.
+     */
+    byte[] trailer() {
+        return trailer;
+    }
+
+    CRC32C crc() {
+        return crc;
+    }
+
+    /**
+     * Scratch space for one chunk of channel samples.
+     */
+    byte[] samples(int length) {
+        if (samples == null || samples.length < length) {
+            samples = new byte[length];
+        }
+        return samples;
+    }
+
+    /**
+     * Scratch space for one chunk of a streamed payload, cleared and limited
+     * to {@code length} bytes.
+     */
+    ByteBuffer staging(int length) {
+        if (staging == null || staging.capacity() < length) {
+            staging = ByteBuffer.allocate(length);
+        }
+        staging.clear().limit(length);
+        return staging;
+    }
+
+    /**
+     * A reader over {@code chunk} alone.
+     */
+    BitReader chunkReader(ByteBuffer chunk) {
+        single[0] = chunk;
+        return reader.reset(single);
+    }
+
+    /**
+     * A writer into {@code chunk} alone.
+     */
+    BitWriter chunkWriter(ByteBuffer chunk) {
+        single[0] = chunk;
+        return writer.reset(single);
+    }
+
+    /**
+     * A reader over {@code first} followed by {@code second}.
+     */
+    BitReader reader(ByteBuffer first, ByteBuffer second) {
+        pair[0] = first;
+        pair[1] = second;
+        return reader.reset(pair);
+    }
+
+    /**
+     * A writer into {@code first} followed by {@code second}.
+     */
+    BitWriter writer(ByteBuffer first, ByteBuffer second) {
+        pair[0] = first;
+        pair[1] = second;
+        return writer.reset(pair);
+    }
+
+    /**
+     * A reader over the first {@code headerSize} header bytes,
+     * {@code message} and the trailer.
+     */
+    BitReader reader(ByteBuffer message, int headerSize) {
+        framed[0] = headerBuffer.clear().limit(headerSize);
+        framed[1] = message;
+        framed[2] = trailerBuffer;
+        return reader.reset(framed);
+    }
+
+    /**
+     * A writer into the whole header scratch space.
+     */
+    BitWriter headerWriter() {
+        headerBuffer.clear();
+        return writer.reset(headerOnly);
+    }
+
+    /**
+     * A writer into the first {@code headerSize} header bytes,
+     * {@code message} and the trailer.
+     */
+    BitWriter writer(ByteBuffer message, int headerSize) {
+        framed[0] = headerBuffer.clear().limit(headerSize);
+        framed[1] = message;
+        framed[2] = trailerBuffer;
+        return writer.reset(framed);
+    }
+
+    /**
+     * A writer into the length prefix of a legacy payload followed by
+     * {@code message}.
+     */
+    BitWriter legacyWriter(ByteBuffer message) {
+        legacy[0] = legacyHeaderBuffer;
+        legacy[1] = message;
+        return writer.reset(legacy);
+    }
+
+    /**
+     * Fill the pooled target with a copy of {@code source}, replacing the pooled
+     * image first if its size or layout does not match. Covers that cannot
+     * hold 8-bit RGB samples are converted, see {@link ImageUtil#createRgbCompatible}.
+     */
+    BufferedImage prepareTarget(BufferedImage source) {
+        if (target == null || !ImageUtil.isRgbCompatible(source, target)) {
+            target = ImageUtil.createRgbCompatible(source);
+            targetRaster = SampleRaster.of(target);
+        }
+        ImageUtil.copyRgbInto(source, target);
+        return target;
+    }
+
+    SampleRaster targetRaster() {
+        return targetRaster;
+    }
+}
@@ -0,0 +1,250 @@
+package com.stegocam.stego;
+
+import com.stegocam.util.LoggerUtil;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Constructor;
+import java.nio.ByteOrder;
+
+/**
+ * Splices payload bits into, and collects them from, a buffer of channel
+ * samples. Each sample carries {@code lsbBits} payload bits, most significant
+ * first, in its lowest bits.
+ * <p>
+ * Depths of 1, 2 and 4 bits divide a byte evenly, so their kernels move a whole
+ * payload byte per step with shift/mask arithmetic and no per-bit branching.
+ * Every other depth uses the bit-at-a-time path, which is also used for any
+ * trailing bits that do not fill a byte.
+ * <p>
+ * Builds made with the {@code vector} Maven profile also contain a SIMD kernel
+ * for those depths. It is picked up when {@code jdk.incubator.vector} is
+ * available at runtime, unless {@code -Dstegocam.vector=false} is set.
+ */
+abstract class LsbKernel {
+
+    private static final String VECTOR_KERNEL_CLASS = "com.stegocam.stego.VectorLsbKernel";
+    private static final LsbKernel[] VECTOR_KERNELS = loadVectorKernels();
+
+    protected final int lsbBits;
+    private final int sampleMask;
+
+    protected LsbKernel(int lsbBits) {
+        this.lsbBits = lsbBits;
+        this.sampleMask = (1 << lsbBits) - 1;
+    }
+
+    /**
+     * Pick the kernel for the given number of LSB bits per channel.
+     */
+    static LsbKernel forDepth(int lsbBits) {
+        if (lsbBits < VECTOR_KERNELS.length && VECTOR_KERNELS[lsbBits] != null) {
+            return VECTOR_KERNELS[lsbBits];
+        }
+        return switch (lsbBits) {
+            case 1 -> OneBit.INSTANCE;
+            case 2 -> TwoBit.INSTANCE;
+            case 4 -> FourBit.INSTANCE;
+            default -> new Bitwise(lsbBits);
+        };
+    }
+
+    private static LsbKernel[] loadVectorKernels() {
+        LsbKernel[] kernels = new LsbKernel[5];
+        if (!Boolean.parseBoolean(System.getProperty("stegocam.vector", "true"))) {
+            return kernels;
+        }
+        try {
+            Constructor<?> constructor = Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor(int.class);
+            for (int depth : new int[]{1, 2, 4}) {
+                kernels[depth] = (LsbKernel) constructor.newInstance(depth);
+            }
+            LoggerUtil.debug("Using vector LSB kernels");
+            return kernels;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not built with the vector profile, or the incubator module is not resolved
+            return new LsbKernel[5];
+        }
+    }
+
+    /**
+     * Embed bits from {@code bits} into {@code samples[0, sampleCount)} until
+     * either the samples or the bits run out.
+     */
+    void embed(byte[] samples, int sampleCount, BitReader bits) {
+        embedBitwise(samples, 0, sampleCount, bits);
+    }
+
+    /**
+     * Fill {@code bits} from {@code samples[0, sampleCount)} until either the
+     * samples run out or the writer is full.
+     */
+    void extract(byte[] samples, int sampleCount, BitWriter bits) {
+        extractBitwise(samples, 0, sampleCount, bits);
+    }
+
+    /**
+     * When fewer than {@code lsbBits} bits remain they occupy the upper end of
+     * the LSB range, leaving the lowest bits of the channel untouched.
+     */
+    protected final void embedBitwise(byte[] samples, int from, int to, BitReader bits) {
+        for (int sample = from; sample < to && bits.remainingBits() > 0; sample++) {
+            int bitsToEmbed = (int) Math.min(lsbBits, bits.remainingBits());
+            int shift = lsbBits - bitsToEmbed;
+            int mask = ((1 << bitsToEmbed) - 1) << shift;
+            samples[sample] = (byte) ((samples[sample] & ~mask) | (bits.readBits(bitsToEmbed) << shift));
+        }
+    }
+
+    protected final void extractBitwise(byte[] samples, int from, int to, BitWriter bits) {
+        for (int sample = from; sample < to && bits.remainingBits() > 0; sample++) {
+            int bitsToRead = (int) Math.min(lsbBits, bits.remainingBits());
+            bits.writeBits((samples[sample] & sampleMask) >>> (lsbBits - bitsToRead), bitsToRead);
+        }
+    }
+
+    /**
+     * Depths that do not divide a byte: one bit at a time.
+     */
+    private static final class Bitwise extends LsbKernel {
+
+        Bitwise(int lsbBits) {
+            super(lsbBits);
+        }
+    }
+
+    /**
+     * One payload byte per eight samples, handled as a single big-endian long.
+     */
+    private static final class OneBit extends LsbKernel {
+
+        static final OneBit INSTANCE = new OneBit();
+
+        private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+        private static final long CLEAR_MASK = 0xFEFEFEFEFEFEFEFEL;
+        private static final long BIT_MASK = 0x0101010101010101L;
+        // Gathers the low bit of each byte into the top byte, first byte most significant
+        private static final long GATHER = 0x0102040810204080L;
+        private static final long[] SPREAD = new long[256];
+
+        static {
+            for (int value = 0; value < 256; value++) {
+                long spread = 0;
+                for (int bit = 7; bit >= 0; bit--) {
+                    spread = (spread << 8) | ((value >>> bit) & 1);
+                }
+                SPREAD[value] = spread;
+            }
+        }
+
+        private OneBit() {
+            super(1);
+        }
+
+        @Override
+        void embed(byte[] samples, int sampleCount, BitReader bits) {
+            int sample = 0;
+            for (long bytes = Math.min(sampleCount / 8, bits.remainingBits() / 8); bytes > 0; bytes--) {
+                long value = (long) LONGS.get(samples, sample);
+                LONGS.set(samples, sample, (value & CLEAR_MASK) | SPREAD[bits.readByte()]);
+                sample += 8;
+            }
+            embedBitwise(samples, sample, sampleCount, bits);
+        }
+
+        @Override
+        void extract(byte[] samples, int sampleCount, BitWriter bits) {
+            int sample = 0;
+            for (long bytes = Math.min(sampleCount / 8, bits.remainingBits() / 8); bytes > 0; bytes--) {
+                long value = (long) LONGS.get(samples, sample) & BIT_MASK;
+                bits.writeByte((int) ((value * GATHER) >>> 56));
+                sample += 8;
+            }
+            extractBitwise(samples, sample, sampleCount, bits);
+        }
+    }
+
+    /**
+     * One payload byte per four samples, handled as a single big-endian int.
+     */
+    private static final class TwoBit extends LsbKernel {
+
+        static final TwoBit INSTANCE = new TwoBit();
+
+        private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+        private static final int CLEAR_MASK = 0xFCFCFCFC;
+        private static final int BIT_MASK = 0x03030303;
+        // Gathers the low two bits of each byte into the top byte, first byte most significant
+        private static final int GATHER = 0x01041040;
+        private static final int[] SPREAD = new int[256];
+
+        static {
+            for (int value = 0; value < 256; value++) {
+                SPREAD[value] = ((value >>> 6) & 3) << 24
+                    | ((value >>> 4) & 3) << 16
+                    | ((value >>> 2) & 3) << 8
+                    | (value & 3);
+            }
+        }
+
+        private TwoBit() {
+            super(2);
+        }
+
+        @Override
+        void embed(byte[] samples, int sampleCount, BitReader bits) {
+            int sample = 0;
+            for (long bytes = Math.min(sampleCount / 4, bits.remainingBits() / 8); bytes > 0; bytes--) {
+                int value = (int) INTS.get(samples, sample);
+                INTS.set(samples, sample, (value & CLEAR_MASK) | SPREAD[bits.readByte()]);
+                sample += 4;
+            }
+            embedBitwise(samples, sample, sampleCount, bits);
+        }
+
+        @Override
+        void extract(byte[] samples, int sampleCount, BitWriter bits) {
+            int sample = 0;
+            for (long bytes = Math.min(sampleCount / 4, bits.remainingBits() / 8); bytes > 0; bytes--) {
+                int value = (int) INTS.get(samples, sample) & BIT_MASK;
+                bits.writeByte((value * GATHER) >>> 24);
+                sample += 4;
+            }
+            extractBitwise(samples, sample, sampleCount, bits);
+        }
+    }
+
+    /**
+     * One payload byte per two samples, a nibble each.
+     */
+    private static final class FourBit extends LsbKernel {
+
+        static final FourBit INSTANCE = new FourBit();
+
+        private FourBit() {
+            super(4);
+        }
+
+        @Override
+        void embed(byte[] samples, int sampleCount, BitReader bits) {
+            int sample = 0;
+            for (long bytes = Math.min(sampleCount / 2, bits.remainingBits() / 8); bytes > 0; bytes--) {
+                int value = bits.readByte();
+                samples[sample] = (byte) ((samples[sample] & 0xF0) | (value >>> 4));
+                samples[sample + 1] = (byte) ((samples[sample + 1] & 0xF0) | (value & 0x0F));
+                sample += 2;
+            }
+            embedBitwise(samples, sample, sampleCount, bits);
+        }
+
+        @Override
+        void extract(byte[] samples, int sampleCount, BitWriter bits) {
+            int sample = 0;
+            for (long bytes = Math.min(sampleCount / 2, bits.remainingBits() / 8); bytes > 0; bytes--) {
+                bits.writeByte(((samples[sample] & 0x0F) << 4) | (samples[sample + 1] & 0x0F));
+                sample += 2;
+            }
+            extractBitwise(samples, sample, sampleCount, bits);
+        }
+    }
+}
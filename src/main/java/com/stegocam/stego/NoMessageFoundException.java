@@ -0,0 +1,12 @@
+package com.stegocam.stego;
+
+/**
+ * Thrown by {@link StegoEngine} when an image does not appear to carry an
+ * embedded message at all, as opposed to carrying one that is damaged.
+ */
+public class NoMessageFoundException extends IllegalArgumentException {
+
+    public NoMessageFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,26 @@
+package com.stegocam.stego;
+
+/**
+ * A message together with the {@link PayloadHeader} flags it is, or was,
+ * embedded with. Payloads read from images in the older headerless format
+ * have no flags.
+ */
+public record Payload(int flags, byte[] data) {
+
+    public Payload {
+        if ((flags & ~0xFF) != 0) {
+            throw new IllegalArgumentException("Payload flags must fit in one byte.");
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("Payload data cannot be null.");
+        }
+    }
+
+    public boolean isEncrypted() {
+        return (flags & PayloadHeader.FLAG_ENCRYPTED) != 0;
+    }
+
+    public boolean isCompressed() {
+        return (flags & PayloadHeader.FLAG_COMPRESSED) != 0;
+    }
+}
@@ -0,0 +1,223 @@
+package com.stegocam.stego;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.zip.CRC32C;
+
+/**
+ * Random-access view over the message embedded in an image, opened with
+ * {@link StegoEngine#openChannel}. Payload bits are laid out linearly across
+ * the pixels, so any byte range lives in one run of pixels and reads and
+ * writes touch only that run.
+ * <p>
+ * Writes overwrite bytes within the existing message and cannot change its
+ * length. For framed payloads the CRC32C trailer is patched from the bytes
+ * being replaced alone, so the rest of the message is never read. Reads are
+ * not checked against the trailer; use {@link StegoEngine#extractPayload} for
+ * a verified copy. Channels are not thread-safe.
+ */
+public final class PayloadChannel implements SeekableByteChannel {
+
+    private static final int SLICE_BYTES = 8192;
+    // CRC32C polynomial, bit-reversed
+    private static final int POLYNOMIAL = 0x82F63B78;
+    // X_POWERS[k] is x^(2^k) modulo the polynomial. The sequence does not wrap
+    // after 32 entries as it does for zlib's CRC-32, so cover every bit of a long byte count
+    private static final int[] X_POWERS = new int[Long.SIZE + 3];
+
+    static {
+        int power = 1 << 30; // x^1
+        for (int k = 0; k < X_POWERS.length; k++) {
+            X_POWERS[k] = power;
+            power = multiply(power, power);
+        }
+    }
+
+    private final StegoEngine engine;
+    private final SampleRaster raster;
+    private final EngineContext context;
+    private final PayloadHeader header;
+    private final long bodyStart;
+    private final boolean hasTrailer;
+    private final boolean writable;
+    private final ByteBuffer trailerBuffer;
+    private final CRC32C replacedCrc = new CRC32C();
+    private final CRC32C replacementCrc = new CRC32C();
+    private byte[] replaced;
+    private boolean checksumRead;
+    private int checksum;
+    private long position;
+    private boolean open = true;
+
+    PayloadChannel(StegoEngine engine, SampleRaster raster, EngineContext context, PayloadHeader header,
+                   long bodyStart, boolean hasTrailer, boolean writable) {
+        this.engine = engine;
+        this.raster = raster;
+        this.context = context;
+        this.header = header;
+        this.bodyStart = bodyStart;
+        this.hasTrailer = hasTrailer;
+        this.writable = writable;
+        this.trailerBuffer = ByteBuffer.wrap(context.trailer());
+    }
+
+    /**
+     * The header of the embedded payload. For payloads in the older headerless
+     * format this is a header without flags giving their length.
+     */
+    public PayloadHeader header() {
+        return header;
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws ClosedChannelException {
+        ensureOpen();
+        long available = size() - position;
+        if (available <= 0) {
+            return destination.hasRemaining() ? -1 : 0;
+        }
+        int count = (int) Math.min(destination.remaining(), available);
+        if (count > 0) {
+            engine.readPayloadBytes(raster, bodyStart + position, destination.slice(destination.position(), count),
+                context);
+            destination.position(destination.position() + count);
+            position += count;
+        }
+        return count;
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws ClosedChannelException {
+        ensureOpen();
+        if (!writable) {
+            throw new NonWritableChannelException();
+        }
+        int count = source.remaining();
+        if (position + count > size()) {
+            throw new IllegalArgumentException("Writes cannot extend the embedded message.");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        if (!hasTrailer) {
+            engine.writePayloadBytes(raster, bodyStart + position, source, context);
+        } else {
+            readChecksum();
+            if (replaced == null) {
+                replaced = new byte[SLICE_BYTES];
+            }
+            replacedCrc.reset();
+            replacementCrc.reset();
+            for (int done = 0; done < count; ) {
+                int slice = Math.min(SLICE_BYTES, count - done);
+                ByteBuffer replacement = source.slice(source.position() + done, slice);
+                engine.readPayloadBytes(raster, bodyStart + position + done, ByteBuffer.wrap(replaced, 0, slice),
+                    context);
+                replacedCrc.update(replaced, 0, slice);
+                replacementCrc.update(replacement.duplicate());
+                engine.writePayloadBytes(raster, bodyStart + position + done, replacement, context);
+                done += slice;
+            }
+            // CRC32C is linear: swapping equal-length runs changes it by the runs' difference,
+            // carried through the zero bytes that follow
+            int difference = (int) replacedCrc.getValue() ^ (int) replacementCrc.getValue();
+            checksum ^= multiply(shiftByBytes(size() - position - count), difference);
+            PayloadHeader.putInt(checksum, context.trailer(), 0);
+            engine.writePayloadBytes(raster, bodyStart + size(), trailerBuffer.clear(), context);
+        }
+        source.position(source.position() + count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public PayloadChannel position(long newPosition) throws ClosedChannelException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Position cannot be negative.");
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() {
+        return header.length();
+    }
+
+    /**
+     * Embedded messages cannot shrink, so this only accepts sizes at or above
+     * the current one, which leave the message unchanged.
+     */
+    @Override
+    public PayloadChannel truncate(long size) throws ClosedChannelException {
+        ensureOpen();
+        if (!writable) {
+            throw new NonWritableChannelException();
+        }
+        if (size < size()) {
+            throw new IllegalArgumentException("Embedded messages cannot be truncated.");
+        }
+        position = Math.min(position, size);
+        return this;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private void readChecksum() {
+        if (!checksumRead) {
+            engine.readPayloadBytes(raster, bodyStart + size(), trailerBuffer.clear(), context);
+            checksum = PayloadHeader.getInt(context.trailer(), 0);
+            checksumRead = true;
+        }
+    }
+
+    /**
+     * x^(8 * bytes) modulo the polynomial: appending that many zero bytes
+     * multiplies a CRC's contribution by this.
+     */
+    static int shiftByBytes(long bytes) {
+        int product = 1 << 31; // x^0
+        for (int k = 3; bytes != 0; bytes >>>= 1, k++) {
+            if ((bytes & 1) != 0) {
+                product = multiply(X_POWERS[k], product);
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Product of two bit-reversed polynomials modulo the CRC32C polynomial.
+     */
+    static int multiply(int a, int b) {
+        int product = 0;
+        for (int bit = 1 << 31; bit != 0; bit >>>= 1) {
+            if ((a & bit) != 0) {
+                product ^= b;
+            }
+            b = (b & 1) != 0 ? (b >>> 1) ^ POLYNOMIAL : b >>> 1;
+        }
+        return product;
+    }
+}
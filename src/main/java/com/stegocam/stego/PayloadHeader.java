@@ -0,0 +1,185 @@
+package com.stegocam.stego;
+
+import java.util.zip.CRC32C;
+
+/**
+ * The framing {@link StegoEngine} writes in front of every message. In
+ * big-endian order the header is
+ * <pre>
+ *   magic (4) | version (1) | flags (1) | length (4) | header check (2)
+ * </pre>
+ * and it is followed by the message and a CRC32C of the message (4 bytes).
+ * The header check is the low half of a CRC32C over the bytes before it, so
+ * an image without a message is turned away after the first few pixels.
+ * <p>
+ * Messages longer than {@link Integer#MAX_VALUE} bytes, which only fit in
+ * covers such as a {@link PixelStore}, use version {@link #LONG_VERSION}. Its
+ * length field is 8 bytes wide, making the header {@link #LONG_SIZE} bytes.
+ * Shorter messages keep the original layout so older readers still
+ * understand them.
+ * <p>
+ * The magic has its top bit set, so it can never be mistaken for the
+ * non-negative 32-bit length that started payloads in the older headerless
+ * format.
+ *
+ * @param version format version, at most {@link #LONG_VERSION} for readable payloads
+ * @param flags   {@code FLAG_*} bits and a {@code TYPE_*} value
+ * @param length  message length in bytes, header and trailer excluded
+ */
+public record PayloadHeader(int version, int flags, long length) {
+
+    public static final int MAGIC = 0xD57E6A11;
+    public static final int VERSION = 1;
+    public static final int LONG_VERSION = 2;
+    public static final int SIZE = 12;
+    public static final int LONG_SIZE = 16;
+    public static final int TRAILER_SIZE = 4;
+
+    public static final int FLAG_ENCRYPTED = 0x01;
+    public static final int FLAG_COMPRESSED = 0x02;
+    public static final int TYPE_MASK = 0x0C;
+    public static final int TYPE_BYTES = 0x00;
+    public static final int TYPE_TEXT = 0x04;
+    public static final int TYPE_IMAGE = 0x08;
+
+    public PayloadHeader {
+        if (version < 1 || version > 0xFF) {
+            throw new IllegalArgumentException("Payload version must be between 1 and 255.");
+        }
+        if ((flags & ~0xFF) != 0) {
+            throw new IllegalArgumentException("Payload flags must fit in one byte.");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("Payload length cannot be negative.");
+        }
+        if (version != LONG_VERSION && length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Only version " + LONG_VERSION + " payloads can exceed 2 GB.");
+        }
+    }
+
+    /**
+     * A header in the oldest format version that can record {@code length}.
+     */
+    public PayloadHeader(int flags, long length) {
+        this(length > Integer.MAX_VALUE ? LONG_VERSION : VERSION, flags, length);
+    }
+
+    public boolean isEncrypted() {
+        return (flags & FLAG_ENCRYPTED) != 0;
+    }
+
+    public boolean isCompressed() {
+        return (flags & FLAG_COMPRESSED) != 0;
+    }
+
+    public int type() {
+        return flags & TYPE_MASK;
+    }
+
+    /**
+     * The number of header bytes: {@link #LONG_SIZE} for version
+     * {@link #LONG_VERSION}, otherwise {@link #SIZE}.
+     */
+    public int size() {
+        return sizeOf(version);
+    }
+
+    /**
+     * The number of bytes embedded for a message of {@code messageLength}
+     * bytes, header and trailer included.
+     */
+    public static long framedLength(long messageLength) {
+        int headerSize = messageLength > Integer.MAX_VALUE ? LONG_SIZE : SIZE;
+        return headerSize + messageLength + TRAILER_SIZE;
+    }
+
+    /**
+     * Write the {@link #size()} header bytes to the start of {@code destination}.
+     */
+    void encode(byte[] destination) {
+        putInt(MAGIC, destination, 0);
+        destination[4] = (byte) version;
+        destination[5] = (byte) flags;
+        int checkAt = size() - 2;
+        if (version == LONG_VERSION) {
+            putLong(length, destination, 6);
+        } else {
+            putInt((int) length, destination, 6);
+        }
+        int check = headerCheck(destination, checkAt);
+        destination[checkAt] = (byte) (check >>> 8);
+        destination[checkAt + 1] = (byte) check;
+    }
+
+    /**
+     * Whether {@code source} starts with the magic value.
+     */
+    static boolean hasMagic(byte[] source) {
+        return getInt(source, 0) == MAGIC;
+    }
+
+    /**
+     * Parse a header written by {@link #encode} from the first
+     * {@code available} bytes of {@code source}, or return null when the
+     * magic or header check does not match or the header is cut short.
+     */
+    static PayloadHeader decode(byte[] source, int available) {
+        if (available < SIZE || !hasMagic(source)) {
+            return null;
+        }
+        int version = source[4] & 0xFF;
+        int checkAt = sizeOf(version) - 2;
+        if (available < checkAt + 2 || version == 0) {
+            return null;
+        }
+        int check = ((source[checkAt] & 0xFF) << 8) | (source[checkAt + 1] & 0xFF);
+        long length = version == LONG_VERSION ? getLong(source, 6) : getInt(source, 6);
+        if (check != headerCheck(source, checkAt) || length < 0
+                || (version == LONG_VERSION) != (length > Integer.MAX_VALUE)) {
+            return null;
+        }
+        return new PayloadHeader(version, source[5] & 0xFF, length);
+    }
+
+    private static int sizeOf(int version) {
+        return version == LONG_VERSION ? LONG_SIZE : SIZE;
+    }
+
+    /**
+     * The CRC32C of {@code message}, as stored in the trailer.
+     */
+    static int checksum(CRC32C crc, byte[] message) {
+        crc.reset();
+        crc.update(message, 0, message.length);
+        return (int) crc.getValue();
+    }
+
+    private static int headerCheck(byte[] header, int checkedBytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(header, 0, checkedBytes);
+        return (int) crc.getValue() & 0xFFFF;
+    }
+
+    static void putInt(int value, byte[] destination, int offset) {
+        destination[offset] = (byte) (value >>> 24);
+        destination[offset + 1] = (byte) (value >>> 16);
+        destination[offset + 2] = (byte) (value >>> 8);
+        destination[offset + 3] = (byte) value;
+    }
+
+    static void putLong(long value, byte[] destination, int offset) {
+        putInt((int) (value >>> 32), destination, offset);
+        putInt((int) value, destination, offset + 4);
+    }
+
+    static long getLong(byte[] source, int offset) {
+        return ((long) getInt(source, offset) << 32) | (getInt(source, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    static int getInt(byte[] source, int offset) {
+        return ((source[offset] & 0xFF) << 24)
+            | ((source[offset + 1] & 0xFF) << 16)
+            | ((source[offset + 2] & 0xFF) << 8)
+            | (source[offset + 3] & 0xFF);
+    }
+}
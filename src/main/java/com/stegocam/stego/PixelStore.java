@@ -0,0 +1,174 @@
+package com.stegocam.stego;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+/**
+ * An RGB or RGBA raster held off the Java heap in direct buffers, for covers
+ * too large for a {@link BufferedImage}, whose single backing array caps it
+ * at 2<sup>31</sup> samples, or too many to keep on the heap at once. Pixels
+ * are stored row by row as R, G, B and, with alpha, A bytes, split across
+ * segments of {@value #SEGMENT_PIXELS} pixels so no pixel straddles two
+ * buffers.
+ * <p>
+ * {@link StegoEngine} embeds into and extracts from a store exactly as it
+ * does for an image, with the same bit layout. The memory is released when
+ * the store becomes unreachable.
+ */
+public final class PixelStore {
+
+    static final int SEGMENT_PIXELS = 1 << 28;
+
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final ByteBuffer[] segments;
+
+    private PixelStore(int width, int height, boolean alpha) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Pixel store dimensions must be positive.");
+        }
+        this.width = width;
+        this.height = height;
+        this.stride = alpha ? 4 : 3;
+        long pixels = (long) width * height;
+        this.segments = new ByteBuffer[(int) ((pixels + SEGMENT_PIXELS - 1) / SEGMENT_PIXELS)];
+        for (int i = 0; i < segments.length; i++) {
+            long segmentPixels = Math.min(SEGMENT_PIXELS, pixels - (long) i * SEGMENT_PIXELS);
+            segments[i] = ByteBuffer.allocateDirect((int) segmentPixels * stride);
+        }
+    }
+
+    /**
+     * A black, and with {@code alpha} fully transparent, store of the given
+     * size.
+     */
+    public static PixelStore allocate(int width, int height, boolean alpha) {
+        return new PixelStore(width, height, alpha);
+    }
+
+    /**
+     * A store holding a copy of {@code image}, with alpha when the image has
+     * it.
+     */
+    public static PixelStore copyOf(BufferedImage image) {
+        PixelStore store = new PixelStore(image.getWidth(), image.getHeight(), image.getColorModel().hasAlpha());
+        int[] row = new int[image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int x = 0; x < row.length; x++) {
+                store.setRGB(x, y, row[x]);
+            }
+        }
+        return store;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public boolean hasAlpha() {
+        return stride == 4;
+    }
+
+    public long pixelCount() {
+        return (long) width * height;
+    }
+
+    /**
+     * The pixel at ({@code x}, {@code y}) as ARGB; opaque when the store has
+     * no alpha.
+     */
+    public int getRGB(int x, int y) {
+        long pixel = pixelIndex(x, y);
+        ByteBuffer segment = segments[(int) (pixel / SEGMENT_PIXELS)];
+        int index = (int) (pixel % SEGMENT_PIXELS) * stride;
+        int alpha = stride == 4 ? segment.get(index + 3) & 0xFF : 0xFF;
+        return alpha << 24
+            | (segment.get(index) & 0xFF) << 16
+            | (segment.get(index + 1) & 0xFF) << 8
+            | segment.get(index + 2) & 0xFF;
+    }
+
+    /**
+     * Set the pixel at ({@code x}, {@code y}) from ARGB; alpha is dropped when
+     * the store has none.
+     */
+    public void setRGB(int x, int y, int argb) {
+        long pixel = pixelIndex(x, y);
+        ByteBuffer segment = segments[(int) (pixel / SEGMENT_PIXELS)];
+        int index = (int) (pixel % SEGMENT_PIXELS) * stride;
+        segment.put(index, (byte) (argb >> 16));
+        segment.put(index + 1, (byte) (argb >> 8));
+        segment.put(index + 2, (byte) argb);
+        if (stride == 4) {
+            segment.put(index + 3, (byte) (argb >>> 24));
+        }
+    }
+
+    /**
+     * Copy the store into a new TYPE_INT_RGB or TYPE_INT_ARGB image.
+     *
+     * @throws IllegalStateException if the store is too large for one
+     */
+    public BufferedImage toBufferedImage() {
+        if (pixelCount() > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Pixel store is too large for a BufferedImage.");
+        }
+        BufferedImage image = new BufferedImage(width, height,
+            hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = getRGB(x, y);
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+
+    /**
+     * Copy the RGB samples of {@code pixelCount} pixels from
+     * {@code firstPixel} into {@code samples} starting at {@code offset}, or
+     * the other way when {@code store} is set.
+     */
+    void transfer(long firstPixel, int pixelCount, byte[] samples, int offset, boolean store) {
+        while (pixelCount > 0) {
+            ByteBuffer segment = segments[(int) (firstPixel / SEGMENT_PIXELS)];
+            int pixel = (int) (firstPixel % SEGMENT_PIXELS);
+            int run = Math.min(pixelCount, SEGMENT_PIXELS - pixel);
+            if (stride == SampleRaster.CHANNEL_COUNT) {
+                if (store) {
+                    segment.put(pixel * stride, samples, offset, run * stride);
+                } else {
+                    segment.get(pixel * stride, samples, offset, run * stride);
+                }
+                offset += run * stride;
+            } else {
+                int index = pixel * stride;
+                for (int i = 0; i < run; i++, index += stride) {
+                    for (int channel = 0; channel < SampleRaster.CHANNEL_COUNT; channel++, offset++) {
+                        if (store) {
+                            segment.put(index + channel, samples[offset]);
+                        } else {
+                            samples[offset] = segment.get(index + channel);
+                        }
+                    }
+                }
+            }
+            firstPixel += run;
+            pixelCount -= run;
+        }
+    }
+
+    private long pixelIndex(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException("Pixel (" + x + ", " + y + ") is outside the store.");
+        }
+        return (long) y * width + x;
+    }
+}
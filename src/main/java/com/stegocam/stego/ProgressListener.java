@@ -0,0 +1,23 @@
+package com.stegocam.stego;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Receives progress from {@link StegoEngine} as each chunk of pixels is
+ * embedded or extracted. Register one with
+ * {@link EngineContext#setProgressListener}.
+ * <p>
+ * On the parallel path callbacks arrive concurrently from pool threads and
+ * not necessarily in row order, so implementations must be thread-safe and
+ * should do little more than record the update.
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * Rows {@code [firstRow, endRow)} of {@code image} have just been
+     * processed, bringing the total to {@code bitsDone} of {@code totalBits}
+     * payload bits (header and trailer included).
+     */
+    void progress(BufferedImage image, int firstRow, int endRow, long bitsDone, long totalBits);
+}
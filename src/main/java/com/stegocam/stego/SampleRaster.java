@@ -0,0 +1,318 @@
+package com.stegocam.stego;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Flat view over the red, green and blue samples of an image in the order the
+ * engine consumes them: pixels in row-major order, each contributing R, G then
+ * B. Common image types are read and written a row at a time through their
+ * raster's data elements, which copies the backing array without taking it
+ * out of Java2D's hands; anything else goes through
+ * {@link BufferedImage#getRGB} and {@link BufferedImage#setRGB} so the result
+ * is identical either way.
+ * {@link PixelStore}s are read and written straight through their buffers.
+ */
+abstract class SampleRaster {
+
+    static final int CHANNEL_COUNT = 3;
+
+    protected final int width;
+    protected final int height;
+
+    protected SampleRaster(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Create the fastest available view for the given image.
+     */
+    static SampleRaster of(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+                if (sampleModel instanceof SinglePixelPackedSampleModel
+                        && dataBuffer instanceof DataBufferInt) {
+                    return new IntPacked(image);
+                }
+                break;
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                if (sampleModel instanceof PixelInterleavedSampleModel
+                        && dataBuffer instanceof DataBufferByte) {
+                    return new ByteInterleaved(image);
+                }
+                break;
+            default:
+                break;
+        }
+        return new Generic(image);
+    }
+
+    /**
+     * A view over the samples of {@code store}.
+     */
+    static SampleRaster of(PixelStore store) {
+        return new Store(store);
+    }
+
+    long pixelCount() {
+        return (long) width * height;
+    }
+
+    /**
+     * Whether disjoint pixel ranges may be written from different threads at
+     * the same time. Only true when every pixel owns its own data elements.
+     */
+    boolean supportsParallelWrites() {
+        return false;
+    }
+
+    /**
+     * Copy the RGB samples of {@code pixelCount} consecutive pixels, starting
+     * at {@code firstPixel}, into {@code destination}.
+     */
+    void read(long firstPixel, int pixelCount, byte[] destination) {
+        int x = (int) (firstPixel % width);
+        int y = (int) (firstPixel / width);
+        int offset = 0;
+        while (pixelCount > 0) {
+            int run = Math.min(pixelCount, width - x);
+            readRow(x, y, run, destination, offset);
+            offset += run * CHANNEL_COUNT;
+            pixelCount -= run;
+            x = 0;
+            y++;
+        }
+    }
+
+    /**
+     * Store the RGB samples of {@code pixelCount} consecutive pixels, starting
+     * at {@code firstPixel}, from {@code source}. Alpha is left untouched.
+     */
+    void write(long firstPixel, int pixelCount, byte[] source) {
+        int x = (int) (firstPixel % width);
+        int y = (int) (firstPixel / width);
+        int offset = 0;
+        while (pixelCount > 0) {
+            int run = Math.min(pixelCount, width - x);
+            writeRow(x, y, run, source, offset);
+            offset += run * CHANNEL_COUNT;
+            pixelCount -= run;
+            x = 0;
+            y++;
+        }
+    }
+
+    protected abstract void readRow(int x, int y, int run, byte[] destination, int offset);
+
+    protected abstract void writeRow(int x, int y, int run, byte[] source, int offset);
+
+    /**
+     * TYPE_INT_RGB and TYPE_INT_ARGB: one packed int per pixel, copied a row
+     * at a time with {@link WritableRaster#getDataElements} and
+     * {@link WritableRaster#setDataElements}. Bits outside the RGB masks
+     * (alpha, or padding for TYPE_INT_RGB) are preserved.
+     */
+    private static final class IntPacked extends SampleRaster {
+
+        private static final int RGB_MASK = 0x00FFFFFF;
+        // Shared by every raster, since segments of one image are copied on several pool threads
+        private static final ThreadLocal<int[]> ROW = ThreadLocal.withInitial(() -> new int[0]);
+
+        private final WritableRaster raster;
+
+        IntPacked(BufferedImage image) {
+            super(image.getWidth(), image.getHeight());
+            this.raster = image.getRaster();
+        }
+
+        @Override
+        boolean supportsParallelWrites() {
+            return true;
+        }
+
+        private int[] row(int x, int y, int run) {
+            int[] row = ROW.get();
+            if (row.length < run) {
+                row = new int[run];
+                ROW.set(row);
+            }
+            return (int[]) raster.getDataElements(x, y, run, 1, row);
+        }
+
+        @Override
+        protected void readRow(int x, int y, int run, byte[] destination, int offset) {
+            int[] row = row(x, y, run);
+            for (int i = 0; i < run; i++) {
+                int pixel = row[i];
+                destination[offset++] = (byte) (pixel >> 16);
+                destination[offset++] = (byte) (pixel >> 8);
+                destination[offset++] = (byte) pixel;
+            }
+        }
+
+        @Override
+        protected void writeRow(int x, int y, int run, byte[] source, int offset) {
+            int[] row = row(x, y, run);
+            for (int i = 0; i < run; i++) {
+                int rgb = ((source[offset] & 0xFF) << 16)
+                    | ((source[offset + 1] & 0xFF) << 8)
+                    | (source[offset + 2] & 0xFF);
+                row[i] = (row[i] & ~RGB_MASK) | rgb;
+                offset += CHANNEL_COUNT;
+            }
+            raster.setDataElements(x, y, run, 1, row);
+        }
+    }
+
+    /**
+     * TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR: one byte per sample, copied a row
+     * at a time like {@link IntPacked}. Data elements come back in band
+     * order, so each pixel starts with R, G and B, followed by alpha for
+     * TYPE_4BYTE_ABGR.
+     */
+    private static final class ByteInterleaved extends SampleRaster {
+
+        private static final ThreadLocal<byte[]> ROW = ThreadLocal.withInitial(() -> new byte[0]);
+
+        private final WritableRaster raster;
+        private final int pixelStride;
+
+        ByteInterleaved(BufferedImage image) {
+            super(image.getWidth(), image.getHeight());
+            this.raster = image.getRaster();
+            this.pixelStride = raster.getNumDataElements();
+        }
+
+        @Override
+        boolean supportsParallelWrites() {
+            return true;
+        }
+
+        private byte[] row(int run) {
+            byte[] row = ROW.get();
+            if (row.length < run * pixelStride) {
+                row = new byte[run * pixelStride];
+                ROW.set(row);
+            }
+            return row;
+        }
+
+        @Override
+        protected void readRow(int x, int y, int run, byte[] destination, int offset) {
+            byte[] row = (byte[]) raster.getDataElements(x, y, run, 1, row(run));
+            if (pixelStride == CHANNEL_COUNT) {
+                System.arraycopy(row, 0, destination, offset, run * CHANNEL_COUNT);
+                return;
+            }
+            for (int index = 0, end = run * pixelStride; index < end; index += pixelStride) {
+                destination[offset++] = row[index];
+                destination[offset++] = row[index + 1];
+                destination[offset++] = row[index + 2];
+            }
+        }
+
+        @Override
+        protected void writeRow(int x, int y, int run, byte[] source, int offset) {
+            byte[] row = row(run);
+            if (pixelStride == CHANNEL_COUNT) {
+                System.arraycopy(source, offset, row, 0, run * CHANNEL_COUNT);
+            } else {
+                // Fetch the row first so alpha survives
+                raster.getDataElements(x, y, run, 1, row);
+                for (int index = 0, end = run * pixelStride; index < end; index += pixelStride) {
+                    row[index] = source[offset++];
+                    row[index + 1] = source[offset++];
+                    row[index + 2] = source[offset++];
+                }
+            }
+            raster.setDataElements(x, y, run, 1, row);
+        }
+    }
+
+    /**
+     * Off-heap pixel stores, addressed by pixel index rather than by row so
+     * they can hold more than 2<sup>31</sup> samples.
+     */
+    private static final class Store extends SampleRaster {
+
+        private final PixelStore store;
+
+        Store(PixelStore store) {
+            super(store.width(), store.height());
+            this.store = store;
+        }
+
+        @Override
+        boolean supportsParallelWrites() {
+            return true;
+        }
+
+        @Override
+        void read(long firstPixel, int pixelCount, byte[] destination) {
+            store.transfer(firstPixel, pixelCount, destination, 0, false);
+        }
+
+        @Override
+        void write(long firstPixel, int pixelCount, byte[] source) {
+            store.transfer(firstPixel, pixelCount, source, 0, true);
+        }
+
+        @Override
+        protected void readRow(int x, int y, int run, byte[] destination, int offset) {
+            store.transfer((long) y * width + x, run, destination, offset, false);
+        }
+
+        @Override
+        protected void writeRow(int x, int y, int run, byte[] source, int offset) {
+            store.transfer((long) y * width + x, run, source, offset, true);
+        }
+    }
+
+    /**
+     * Fallback for every other image type, going through the colour model.
+     */
+    private static final class Generic extends SampleRaster {
+
+        private final BufferedImage image;
+
+        Generic(BufferedImage image) {
+            super(image.getWidth(), image.getHeight());
+            this.image = image;
+        }
+
+        @Override
+        protected void readRow(int x, int y, int run, byte[] destination, int offset) {
+            int[] pixels = image.getRGB(x, y, run, 1, null, 0, run);
+            for (int pixel : pixels) {
+                destination[offset++] = (byte) (pixel >> 16);
+                destination[offset++] = (byte) (pixel >> 8);
+                destination[offset++] = (byte) pixel;
+            }
+        }
+
+        @Override
+        protected void writeRow(int x, int y, int run, byte[] source, int offset) {
+            int[] pixels = image.getRGB(x, y, run, 1, null, 0, run);
+            for (int i = 0; i < run; i++) {
+                int rgb = ((source[offset] & 0xFF) << 16)
+                    | ((source[offset + 1] & 0xFF) << 8)
+                    | (source[offset + 2] & 0xFF);
+                pixels[i] = (pixels[i] & 0xFF000000) | rgb;
+                offset += CHANNEL_COUNT;
+            }
+            image.setRGB(x, y, run, 1, pixels, 0, run);
+        }
+    }
+}
@@ -1,20 +1,94 @@
 package com.stegocam.stego;
 
 import com.stegocam.config.AppConfig;
+import com.stegocam.util.ImageUtil;
 
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
 
 /**
  * Core steganography engine that performs bit-level embedding and extraction
  * using least significant bit (LSB) manipulation across RGB channels.
+ * Pixels are processed in chunks through a {@link SampleRaster}, which reads
+ * the backing data buffer directly for the common image types.
+ * <p>
+ * The number of LSB bits per channel defaults to {@link AppConfig#LSB_BITS};
+ * the matching {@link LsbKernel} is chosen once per engine.
+ * <p>
+ * Bit {@code i} of the payload always lands in pixel
+ * {@code i / (3 * LSB_BITS)}, so large payloads are split into disjoint pixel
+ * segments and handled on a {@link ForkJoinPool}. Payloads spanning fewer
+ * pixels than the configured threshold stay on the serial path.
+ * <p>
+ * Passing an {@link EngineContext} lets repeated calls reuse the target image
+ * and scratch buffers instead of allocating them each time, and report
+ * progress to a {@link ProgressListener}.
  */
 public class StegoEngine {
 
-    private static final int CHANNEL_COUNT = 3; // R, G, B
+    private static final int CHANNEL_COUNT = SampleRaster.CHANNEL_COUNT; // R, G, B
+    private static final int CHUNK_PIXELS = 4096;
+    // Segment boundaries are multiples of 8 pixels so they always fall on a payload byte boundary
+    private static final long SEGMENT_PIXELS = 16L * CHUNK_PIXELS;
+    // Leaves headroom below Integer.MAX_VALUE, which some VMs cannot allocate
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    // Eight pixels hold 24 * lsbBits bits, so payload bytes and pixels line up every eight pixels
+    private static final int ALIGNMENT_PIXELS = 8;
+
+    private final int lsbBits;
+    private final long parallelThresholdPixels;
+    private final ForkJoinPool pool;
+    private final LsbKernel kernel;
+
+    public StegoEngine() {
+        this(AppConfig.LSB_BITS);
+    }
+
+    /**
+     * Create an engine that stores {@code lsbBits} payload bits (1-8) in each
+     * colour channel.
+     */
+    public StegoEngine(int lsbBits) {
+        this(lsbBits, AppConfig.PARALLEL_THRESHOLD_PIXELS, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create an engine that spreads work across {@code pool} once a payload
+     * spans at least {@code parallelThresholdPixels} pixels. Pass
+     * {@link Long#MAX_VALUE} to always stay serial.
+     */
+    public StegoEngine(long parallelThresholdPixels, ForkJoinPool pool) {
+        this(AppConfig.LSB_BITS, parallelThresholdPixels, pool);
+    }
+
+    public StegoEngine(int lsbBits, long parallelThresholdPixels, ForkJoinPool pool) {
+        if (lsbBits < 1 || lsbBits > 8) {
+            throw new IllegalArgumentException("LSB bits per channel must be between 1 and 8.");
+        }
+        if (parallelThresholdPixels < 0) {
+            throw new IllegalArgumentException("Parallel threshold cannot be negative.");
+        }
+        this.lsbBits = lsbBits;
+        this.parallelThresholdPixels = parallelThresholdPixels;
+        this.pool = Objects.requireNonNull(pool, "pool");
+        this.kernel = LsbKernel.forDepth(lsbBits);
+    }
+
+    public int getLsbBits() {
+        return lsbBits;
+    }
 
     /**
      * Convert an array of bytes (MSB first) into a boolean array.
@@ -90,183 +164,717 @@ public class StegoEngine {
      * of bytes.
      */
     public boolean canHoldMessage(BufferedImage image, int messageLengthBytes) {
-        if (image == null || messageLengthBytes < 0) {
+        if (image == null) {
+            return false;
+        }
+        return canHoldMessage(image.getWidth(), image.getHeight(), messageLengthBytes);
+    }
+
+    /**
+     * Like {@link #canHoldMessage(BufferedImage, int)} for a cover of the given
+     * size, e.g. one that has only been probed and not decoded.
+     */
+    public boolean canHoldMessage(int width, int height, int messageLengthBytes) {
+        if (messageLengthBytes < 0) {
             return false;
         }
-        long capacityBits = (long) image.getWidth() * image.getHeight() * CHANNEL_COUNT * AppConfig.LSB_BITS;
-        long requiredBits = (long) messageLengthBytes * 8L;
-        return requiredBits <= capacityBits;
+        return (long) messageLengthBytes <= getCapacityBytes(width, height);
+    }
+
+    /**
+     * The number of bytes, including the length prefix, that a cover of the
+     * given size can hold.
+     */
+    public long getCapacityBytes(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        return (long) width * height * CHANNEL_COUNT * lsbBits / 8L;
     }
 
     /**
      * Embed a message (UTF-8 or arbitrary binary payload) into the provided
      * image using LSB steganography. The returned image is a copy of the
-     * source with the payload embedded and includes a 32-bit length prefix.
+     * source with the message embedded behind a {@link PayloadHeader} and
+     * followed by its CRC32C. Covers that cannot hold 8-bit RGB samples, such
+     * as gray, indexed or premultiplied ones, are copied into TYPE_INT_ARGB
+     * or TYPE_INT_RGB.
      */
     public BufferedImage embedMessage(BufferedImage source, byte[] message) {
+        return embedMessage(source, message, new EngineContext());
+    }
+
+    /**
+     * Embed like {@link #embedMessage(BufferedImage, byte[])}, but copy the
+     * cover into the target image pooled by {@code context} and reuse its
+     * scratch buffers. The returned image is owned by the context and is
+     * overwritten by its next embed.
+     */
+    public BufferedImage embedMessage(BufferedImage source, byte[] message, EngineContext context) {
+        return embedMessage(source, message, 0, context);
+    }
+
+    /**
+     * Embed like {@link #embedMessage(BufferedImage, byte[], EngineContext)},
+     * recording {@code flags} (see {@link PayloadHeader}) in the header.
+     */
+    public BufferedImage embedMessage(BufferedImage source, byte[] message, int flags, EngineContext context) {
         Objects.requireNonNull(source, "source");
         Objects.requireNonNull(message, "message");
+        Objects.requireNonNull(context, "context");
+        PayloadHeader header = new PayloadHeader(flags, message.length);
+        requireCapacity(source.getWidth(), source.getHeight(), message.length);
+
+        BufferedImage target = context.prepareTarget(source);
+        embedInto(target, context.targetRaster(), header, message, context);
+        return target;
+    }
+
+    /**
+     * Embed directly into {@code image} without copying it first, for callers
+     * that have no further use for the original cover. The image is modified
+     * even if it is shared elsewhere.
+     *
+     * @throws IllegalArgumentException if the image cannot hold 8-bit RGB
+     *         samples, see {@link ImageUtil#holdsRgb}
+     */
+    public void embedMessageInPlace(BufferedImage image, byte[] message) {
+        embedMessageInPlace(image, message, new EngineContext());
+    }
+
+    /**
+     * Embed in place like {@link #embedMessageInPlace(BufferedImage, byte[])},
+     * reusing the scratch buffers and progress listener of {@code context}.
+     */
+    public void embedMessageInPlace(BufferedImage image, byte[] message, EngineContext context) {
+        embedMessageInPlace(image, message, 0, context);
+    }
+
+    /**
+     * Embed in place, recording {@code flags} (see {@link PayloadHeader}) in
+     * the header.
+     */
+    public void embedMessageInPlace(BufferedImage image, byte[] message, int flags, EngineContext context) {
+        Objects.requireNonNull(image, "image");
+        Objects.requireNonNull(message, "message");
+        Objects.requireNonNull(context, "context");
+        PayloadHeader header = new PayloadHeader(flags, message.length);
+        requireCapacity(image.getWidth(), image.getHeight(), message.length);
+
+        embedInto(image, writableRaster(image), header, message, context);
+    }
+
+    /**
+     * Embed into an off-heap {@link PixelStore} in place, recording
+     * {@code flags} in the header. Progress is not reported for stores.
+     */
+    public void embedMessageInPlace(PixelStore store, byte[] message, int flags, EngineContext context) {
+        Objects.requireNonNull(store, "store");
+        Objects.requireNonNull(message, "message");
+        Objects.requireNonNull(context, "context");
+        PayloadHeader header = new PayloadHeader(flags, message.length);
+        requireCapacity(store.width(), store.height(), message.length);
+
+        embedInto(null, SampleRaster.of(store), header, message, context);
+    }
+
+    /**
+     * Embed {@code length} bytes read from {@code input} directly into
+     * {@code image}, a chunk of pixels at a time, so the payload is never held
+     * in memory as a whole. {@code input} must supply at least {@code length}
+     * bytes; anything after them is left unread. Streaming always runs on the
+     * calling thread. Like {@link #embedMessageInPlace(BufferedImage, byte[])}
+     * this rejects images that cannot hold 8-bit RGB samples.
+     *
+     * @throws IOException if reading {@code input} fails
+     */
+    public void embedStreamInPlace(BufferedImage image, ReadableByteChannel input, long length, int flags,
+                                   EngineContext context) throws IOException {
+        Objects.requireNonNull(image, "image");
+        embedStream(image, writableRaster(image), input, length, flags, context);
+    }
+
+    /**
+     * Stream like {@link #embedStreamInPlace(BufferedImage, ReadableByteChannel, long, int, EngineContext)}
+     * from an {@link InputStream}, which is left open.
+     */
+    public void embedStreamInPlace(BufferedImage image, InputStream input, long length, int flags,
+                                   EngineContext context) throws IOException {
+        embedStreamInPlace(image, Channels.newChannel(Objects.requireNonNull(input, "input")), length, flags, context);
+    }
+
+    /**
+     * Stream like {@link #embedStreamInPlace(BufferedImage, ReadableByteChannel, long, int, EngineContext)}
+     * into an off-heap {@link PixelStore}. Messages longer than 2 GB are
+     * framed with a {@link PayloadHeader#LONG_VERSION} header.
+     */
+    public void embedStreamInPlace(PixelStore store, ReadableByteChannel input, long length, int flags,
+                                   EngineContext context) throws IOException {
+        Objects.requireNonNull(store, "store");
+        embedStream(null, SampleRaster.of(store), input, length, flags, context);
+    }
 
-        int totalBytes = Integer.BYTES + message.length;
-        if (!canHoldMessage(source, totalBytes)) {
+    private void embedStream(BufferedImage image, SampleRaster raster, ReadableByteChannel input, long length,
+                             int flags, EngineContext context) throws IOException {
+        Objects.requireNonNull(input, "input");
+        Objects.requireNonNull(context, "context");
+        PayloadHeader payloadHeader = new PayloadHeader(flags, length);
+        if (PayloadHeader.framedLength(length) > capacityBytes(raster)) {
             throw new IllegalArgumentException("Message is too large for the provided image.");
         }
 
-        BufferedImage target = duplicateImage(source);
-        byte[] prefixedPayload = encodeLengthPrefixed(message);
-        boolean[] bits = bytesToBits(prefixedPayload);
-        writeBits(target, bits);
-        return target;
+        byte[] header = context.header();
+        byte[] trailer = context.trailer();
+        payloadHeader.encode(header);
+        int headerSize = payloadHeader.size();
+        long bodyEnd = headerSize + length;
+        long totalBytes = PayloadHeader.framedLength(length);
+        long pixelsNeeded = pixelsForBytes(totalBytes);
+        byte[] samples = context.samples(CHUNK_PIXELS * CHANNEL_COUNT);
+        CRC32C crc = context.crc();
+        crc.reset();
+        ProgressTracker progress = track(context, image, totalBytes * 8L);
+        long offset = 0;
+        for (long pixel = 0; pixel < pixelsNeeded; pixel += CHUNK_PIXELS) {
+            // Every full chunk of pixels holds a whole number of payload bytes
+            long chunkEnd = Math.min(bytesBeforePixel(pixel + CHUNK_PIXELS), totalBytes);
+            ByteBuffer chunk = context.staging((int) (chunkEnd - offset));
+            while (chunk.hasRemaining()) {
+                long at = offset + chunk.position();
+                if (at < headerSize) {
+                    chunk.put(header, (int) at, (int) Math.min(headerSize - at, chunk.remaining()));
+                } else if (at < bodyEnd) {
+                    int from = chunk.position();
+                    int limit = chunk.limit();
+                    chunk.limit((int) Math.min(limit, from + (bodyEnd - at)));
+                    if (input.read(chunk) < 0) {
+                        throw new IllegalArgumentException(
+                            "Input ended after " + (at - headerSize) + " of " + length + " bytes.");
+                    }
+                    chunk.limit(limit);
+                    crc.update(chunk.array(), from, chunk.position() - from);
+                } else {
+                    if (at == bodyEnd) {
+                        PayloadHeader.putInt((int) crc.getValue(), trailer, 0);
+                    }
+                    chunk.put(trailer, (int) (at - bodyEnd), (int) Math.min(totalBytes - at, chunk.remaining()));
+                }
+            }
+            chunk.flip();
+            writeBits(raster, pixel, Math.min(pixel + CHUNK_PIXELS, pixelsNeeded), context.chunkReader(chunk), samples,
+                progress);
+            offset = chunkEnd;
+        }
+    }
+
+    /**
+     * Start embedding {@code message} into a {@code width} x {@code height}
+     * cover that will be supplied band by band, for covers too large to hold
+     * in memory at once.
+     */
+    public BandEmbedder embedInBands(int width, int height, byte[] message, int flags) {
+        Objects.requireNonNull(message, "message");
+        PayloadHeader payloadHeader = new PayloadHeader(flags, message.length);
+        if (PayloadHeader.framedLength(message.length) > getCapacityBytes(width, height)) {
+            throw new IllegalArgumentException("Message is too large for the provided image.");
+        }
+        byte[] header = new byte[payloadHeader.size()];
+        byte[] trailer = new byte[PayloadHeader.TRAILER_SIZE];
+        payloadHeader.encode(header);
+        PayloadHeader.putInt(PayloadHeader.checksum(new CRC32C(), message), trailer, 0);
+        BitReader bits = new BitReader(ByteBuffer.wrap(header), ByteBuffer.wrap(message), ByteBuffer.wrap(trailer));
+        return new BandEmbedder(this, width, height, bits);
+    }
+
+    /**
+     * Continue {@code bits} through every pixel of {@code band}.
+     */
+    void embedBand(BufferedImage band, BitReader bits) {
+        SampleRaster raster = writableRaster(band);
+        writeBits(raster, 0, raster.pixelCount(), bits, new byte[CHUNK_PIXELS * CHANNEL_COUNT], null);
+    }
+
+    /**
+     * Read just the payload header from the first few pixels of
+     * {@code image}. Returns null when the image carries no framed message,
+     * which includes payloads in the older headerless format. Only the
+     * header's pixels are read, so this is the cheap way to screen images.
+     */
+    public PayloadHeader readHeader(BufferedImage image) {
+        Objects.requireNonNull(image, "image");
+        EngineContext context = EngineContext.forCurrentThread();
+        int headerBytes = readHeaderBytes(SampleRaster.of(image), context);
+        return PayloadHeader.decode(context.header(), headerBytes);
     }
 
     /**
      * Extract a steganographically hidden payload from the given image. The
-     * payload is expected to have been stored with {@link #embedMessage} and
-     * therefore begins with a 32-bit length prefix.
+     * header is read and checked first, so images without a message fail
+     * after a handful of pixels; the message body may then be extracted in
+     * parallel and is verified against its CRC32C. Payloads written before
+     * the header existed, which start with a bare 32-bit length, are still
+     * read.
+     *
+     * @throws NoMessageFoundException if the image carries no message
+     * @throws IllegalArgumentException if the message is damaged or uses a
+     *                                  newer format version
      */
     public byte[] extractMessage(BufferedImage stegoImage) {
+        return extractMessage(stegoImage, new EngineContext());
+    }
+
+    /**
+     * Extract like {@link #extractMessage(BufferedImage)}, reusing the scratch
+     * buffers of {@code context}. On the serial path only the returned array
+     * is allocated per call.
+     */
+    public byte[] extractMessage(BufferedImage stegoImage, EngineContext context) {
+        return extractPayload(stegoImage, context).data();
+    }
+
+    /**
+     * Extract like {@link #extractMessage(BufferedImage, EngineContext)}, and
+     * also return the flags stored in the payload header.
+     */
+    public Payload extractPayload(BufferedImage stegoImage, EngineContext context) {
         Objects.requireNonNull(stegoImage, "stegoImage");
+        return extractPayload(stegoImage, SampleRaster.of(stegoImage), context);
+    }
 
-        int headerBits = Integer.BYTES * 8;
-        boolean[] lengthBits = new boolean[headerBits];
-        boolean[] messageBits = null;
-        int lengthBitIndex = 0;
-        int messageBitIndex = 0;
-
-        outerLoop:
-        for (int y = 0; y < stegoImage.getHeight(); y++) {
-            for (int x = 0; x < stegoImage.getWidth(); x++) {
-                int pixel = stegoImage.getRGB(x, y);
-                int[] channels = extractChannels(pixel);
-
-                for (int channel = 0; channel < CHANNEL_COUNT; channel++) {
-                    int colour = channels[channel];
-                    for (int bit = AppConfig.LSB_BITS - 1; bit >= 0; bit--) {
-                        boolean value = ((colour >> bit) & 1) == 1;
-
-                        if (lengthBitIndex < headerBits) {
-                            lengthBits[lengthBitIndex++] = value;
-                            if (lengthBitIndex == headerBits) {
-                                byte[] lengthBytes = bitsToBytes(lengthBits);
-                                int messageLength = decodeMessageLength(lengthBytes);
-                                if (messageLength == 0) {
-                                    return new byte[0];
-                                }
-                                long requiredBits = (long) messageLength * 8L;
-                                long availableBits = (long) stegoImage.getWidth() * stegoImage.getHeight() * CHANNEL_COUNT * AppConfig.LSB_BITS;
-                                if (headerBits + requiredBits > availableBits) {
-                                    throw new IllegalArgumentException("Embedded message length exceeds image capacity.");
-                                }
-                                messageBits = new boolean[(int) requiredBits];
-                            }
-                        } else if (messageBits != null) {
-                            if (messageBitIndex < messageBits.length) {
-                                messageBits[messageBitIndex++] = value;
-                                if (messageBitIndex == messageBits.length) {
-                                    break outerLoop;
-                                }
-                            }
-                        }
-                    }
+    /**
+     * Extract like {@link #extractPayload(BufferedImage, EngineContext)} from
+     * an off-heap {@link PixelStore}. Messages too long for an array have to
+     * be read with {@link #extractStream(PixelStore, WritableByteChannel, EngineContext)}.
+     */
+    public Payload extractPayload(PixelStore store, EngineContext context) {
+        Objects.requireNonNull(store, "store");
+        return extractPayload(null, SampleRaster.of(store), context);
+    }
+
+    private Payload extractPayload(BufferedImage image, SampleRaster raster, EngineContext context) {
+        Objects.requireNonNull(context, "context");
+        Framing framing = readFraming(raster, context);
+        if (framing.length() > MAX_ARRAY_LENGTH) {
+            throw new IllegalArgumentException("Embedded message is too large for an array; stream it instead.");
+        }
+        byte[] message = new byte[(int) framing.length()];
+        long totalBytes = framing.totalBytes();
+        long pixelsNeeded = pixelsForBytes(totalBytes);
+        ProgressTracker progress = track(context, image, totalBytes * 8L);
+        byte[] trailer;
+        if (runsInParallel(pixelsNeeded, true)) {
+            byte[][] parts = framing.legacy()
+                ? new byte[][]{new byte[Integer.BYTES], message}
+                : new byte[][]{new byte[framing.headerSize()], message, new byte[PayloadHeader.TRAILER_SIZE]};
+            pool.invoke(new SegmentTask(0, pixelsNeeded, (firstPixel, endPixel) -> {
+                BitWriter bits = new BitWriter(slice(parts, firstPixel, endPixel));
+                readBits(raster, firstPixel, endPixel, bits, new byte[CHUNK_PIXELS * CHANNEL_COUNT], progress);
+                requireFullyRead(bits);
+            }));
+            trailer = parts[parts.length - 1];
+        } else {
+            BitWriter bits = framing.legacy()
+                ? context.legacyWriter(ByteBuffer.wrap(message))
+                : context.writer(ByteBuffer.wrap(message), framing.headerSize());
+            readBits(raster, 0, pixelsNeeded, bits, context.samples(CHUNK_PIXELS * CHANNEL_COUNT), progress);
+            requireFullyRead(bits);
+            trailer = context.trailer();
+        }
+        if (!framing.legacy() && PayloadHeader.getInt(trailer, 0) != PayloadHeader.checksum(context.crc(), message)) {
+            throw new IllegalArgumentException("Embedded message checksum mismatch.");
+        }
+        return new Payload(framing.flags(), message);
+    }
+
+    /**
+     * Extract the message from {@code stegoImage} straight into
+     * {@code output}, a chunk of pixels at a time, so it is never held in
+     * memory as a whole. The checksum can only be verified once everything has
+     * been written; if it does not match, an exception is thrown and the
+     * output should be discarded. Streaming always runs on the calling thread.
+     *
+     * @return the payload's header; for payloads in the older headerless
+     *         format, a header without flags giving their length
+     * @throws NoMessageFoundException if the image carries no message
+     * @throws IOException if writing {@code output} fails
+     */
+    public PayloadHeader extractStream(BufferedImage stegoImage, WritableByteChannel output, EngineContext context)
+            throws IOException {
+        Objects.requireNonNull(stegoImage, "stegoImage");
+        return extractStream(stegoImage, SampleRaster.of(stegoImage), output, context);
+    }
+
+    /**
+     * Stream like {@link #extractStream(BufferedImage, WritableByteChannel, EngineContext)}
+     * from an off-heap {@link PixelStore}, for messages of any length.
+     */
+    public PayloadHeader extractStream(PixelStore store, WritableByteChannel output, EngineContext context)
+            throws IOException {
+        Objects.requireNonNull(store, "store");
+        return extractStream(null, SampleRaster.of(store), output, context);
+    }
+
+    private PayloadHeader extractStream(BufferedImage image, SampleRaster raster, WritableByteChannel output,
+                                        EngineContext context) throws IOException {
+        Objects.requireNonNull(output, "output");
+        Objects.requireNonNull(context, "context");
+        Framing framing = readFraming(raster, context);
+        long bodyStart = framing.headerSize();
+        long bodyEnd = bodyStart + framing.length();
+        long totalBytes = framing.totalBytes();
+        long pixelsNeeded = pixelsForBytes(totalBytes);
+        byte[] samples = context.samples(CHUNK_PIXELS * CHANNEL_COUNT);
+        byte[] trailer = context.trailer();
+        CRC32C crc = context.crc();
+        crc.reset();
+        ProgressTracker progress = track(context, image, totalBytes * 8L);
+        long offset = 0;
+        for (long pixel = 0; pixel < pixelsNeeded; pixel += CHUNK_PIXELS) {
+            long chunkEnd = Math.min(bytesBeforePixel(pixel + CHUNK_PIXELS), totalBytes);
+            ByteBuffer chunk = context.staging((int) (chunkEnd - offset));
+            BitWriter bits = context.chunkWriter(chunk);
+            readBits(raster, pixel, Math.min(pixel + CHUNK_PIXELS, pixelsNeeded), bits, samples, progress);
+            requireFullyRead(bits);
+
+            long bodyFrom = Math.max(offset, bodyStart);
+            long bodyTo = Math.min(chunkEnd, bodyEnd);
+            if (bodyFrom < bodyTo) {
+                chunk.limit((int) (bodyTo - offset)).position((int) (bodyFrom - offset));
+                crc.update(chunk.array(), chunk.position(), chunk.remaining());
+                while (chunk.hasRemaining()) {
+                    output.write(chunk);
                 }
             }
+            long trailerFrom = Math.max(offset, bodyEnd);
+            if (!framing.legacy() && trailerFrom < chunkEnd) {
+                System.arraycopy(chunk.array(), (int) (trailerFrom - offset), trailer, (int) (trailerFrom - bodyEnd),
+                    (int) (chunkEnd - trailerFrom));
+            }
+            offset = chunkEnd;
+        }
+        if (!framing.legacy() && PayloadHeader.getInt(trailer, 0) != (int) crc.getValue()) {
+            throw new IllegalArgumentException("Embedded message checksum mismatch.");
         }
+        return new PayloadHeader(framing.version(), framing.flags(), framing.length());
+    }
+
+    /**
+     * Stream like {@link #extractStream(BufferedImage, WritableByteChannel, EngineContext)}
+     * into an {@link OutputStream}, which is left open.
+     */
+    public PayloadHeader extractStream(BufferedImage stegoImage, OutputStream output, EngineContext context)
+            throws IOException {
+        return extractStream(stegoImage, Channels.newChannel(Objects.requireNonNull(output, "output")), context);
+    }
 
-        if (messageBits == null) {
-            throw new IllegalArgumentException("No embedded message length found.");
+    /**
+     * Read the header at the start of the image and work out where the
+     * message lies, for framed and legacy payloads alike.
+     */
+    private Framing readFraming(SampleRaster raster, EngineContext context) {
+        byte[] header = context.header();
+        int headerBytes = readHeaderBytes(raster, context);
+        Framing framing;
+        if (headerBytes < Integer.BYTES || !PayloadHeader.hasMagic(header)) {
+            if (headerBytes < Integer.BYTES) {
+                throw new NoMessageFoundException("No embedded message length found.");
+            }
+            framing = new Framing(true, PayloadHeader.VERSION, 0, decodeMessageLength(header), Integer.BYTES);
+        } else {
+            PayloadHeader payloadHeader = PayloadHeader.decode(header, headerBytes);
+            if (payloadHeader == null) {
+                throw new NoMessageFoundException("No valid payload header found.");
+            }
+            if (payloadHeader.version() > PayloadHeader.LONG_VERSION) {
+                throw new IllegalArgumentException("Unsupported payload version " + payloadHeader.version() + ".");
+            }
+            framing = new Framing(false, payloadHeader.version(), payloadHeader.flags(), payloadHeader.length(),
+                payloadHeader.size());
         }
-        if (messageBitIndex != messageBits.length) {
-            throw new IllegalArgumentException("Image ended before the embedded message was fully read.");
+        if (framing.totalBytes() > capacityBytes(raster)) {
+            throw new NoMessageFoundException("Embedded message length exceeds image capacity.");
         }
-        return bitsToBytes(messageBits);
+        return framing;
     }
 
-    private BufferedImage duplicateImage(BufferedImage source) {
-        int imageType = source.getType() == BufferedImage.TYPE_CUSTOM ? BufferedImage.TYPE_INT_ARGB : source.getType();
-        BufferedImage copy = new BufferedImage(source.getWidth(), source.getHeight(), imageType);
-        Graphics2D graphics = copy.createGraphics();
-        try {
-            graphics.drawImage(source, 0, 0, null);
-        } finally {
-            graphics.dispose();
-        }
-        return copy;
+    /**
+     * Open a random-access channel over the message embedded in
+     * {@code stegoImage}. Only the header is read up front; after that each
+     * read or write touches just the pixels holding the bytes involved. When
+     * {@code writable} is set, writes change {@code stegoImage} in place.
+     *
+     * @throws NoMessageFoundException if the image carries no message
+     */
+    public PayloadChannel openChannel(BufferedImage stegoImage, boolean writable) {
+        Objects.requireNonNull(stegoImage, "stegoImage");
+        return openChannel(writable ? writableRaster(stegoImage) : SampleRaster.of(stegoImage), writable);
+    }
+
+    /**
+     * Open a channel like {@link #openChannel(BufferedImage, boolean)} over the
+     * message embedded in an off-heap {@link PixelStore}.
+     */
+    public PayloadChannel openChannel(PixelStore store, boolean writable) {
+        Objects.requireNonNull(store, "store");
+        return openChannel(SampleRaster.of(store), writable);
     }
 
-    private void writeBits(BufferedImage target, boolean[] bits) {
-        int totalBits = bits.length;
-        int bitIndex = 0;
+    private PayloadChannel openChannel(SampleRaster raster, boolean writable) {
+        EngineContext context = new EngineContext();
+        Framing framing = readFraming(raster, context);
+        PayloadHeader header = new PayloadHeader(framing.version(), framing.flags(), framing.length());
+        return new PayloadChannel(this, raster, context, header, framing.headerSize(), !framing.legacy(), writable);
+    }
 
-        for (int y = 0; y < target.getHeight() && bitIndex < totalBits; y++) {
-            for (int x = 0; x < target.getWidth() && bitIndex < totalBits; x++) {
-                int pixel = target.getRGB(x, y);
-                int alpha = (pixel >> 24) & 0xFF;
-                int red = (pixel >> 16) & 0xFF;
-                int green = (pixel >> 8) & 0xFF;
-                int blue = pixel & 0xFF;
+    /**
+     * Fill the remaining space of {@code destination} with payload bytes
+     * starting at {@code firstByte}. The buffer's position is left unchanged.
+     */
+    void readPayloadBytes(SampleRaster raster, long firstByte, ByteBuffer destination, EngineContext context) {
+        long alignedByte = alignedByte(firstByte);
+        BitWriter bits = context.writer(context.staging((int) (firstByte - alignedByte)), destination);
+        readBits(raster, alignedPixel(alignedByte), pixelsForBytes(firstByte + destination.remaining()), bits,
+            context.samples(CHUNK_PIXELS * CHANNEL_COUNT), null);
+        requireFullyRead(bits);
+    }
 
-                red = embedIntoChannel(red, bits, bitIndex);
-                bitIndex += Math.min(AppConfig.LSB_BITS, totalBits - bitIndex);
+    /**
+     * Overwrite payload bytes starting at {@code firstByte} with the remaining
+     * bytes of {@code source}. The buffer's position is left unchanged.
+     */
+    void writePayloadBytes(SampleRaster raster, long firstByte, ByteBuffer source, EngineContext context) {
+        long alignedByte = alignedByte(firstByte);
+        long firstPixel = alignedPixel(alignedByte);
+        byte[] samples = context.samples(CHUNK_PIXELS * CHANNEL_COUNT);
+        // Rewrite the bytes sharing the first aligned pixels unchanged
+        ByteBuffer lead = context.staging((int) (firstByte - alignedByte));
+        if (lead.hasRemaining()) {
+            BitWriter leadBits = context.chunkWriter(lead);
+            readBits(raster, firstPixel, pixelsForBytes(firstByte), leadBits, samples, null);
+            requireFullyRead(leadBits);
+        }
+        writeBits(raster, firstPixel, pixelsForBytes(firstByte + source.remaining()), context.reader(lead, source),
+            samples, null);
+    }
 
-                if (bitIndex < totalBits) {
-                    green = embedIntoChannel(green, bits, bitIndex);
-                    bitIndex += Math.min(AppConfig.LSB_BITS, totalBits - bitIndex);
-                }
+    private long alignedByte(long payloadByte) {
+        return payloadByte - payloadByte % bytesBeforePixel(ALIGNMENT_PIXELS);
+    }
 
-                if (bitIndex < totalBits) {
-                    blue = embedIntoChannel(blue, bits, bitIndex);
-                    bitIndex += Math.min(AppConfig.LSB_BITS, totalBits - bitIndex);
-                }
+    private long alignedPixel(long alignedByte) {
+        return alignedByte / bytesBeforePixel(ALIGNMENT_PIXELS) * ALIGNMENT_PIXELS;
+    }
 
-                int combined = (alpha << 24) | (red << 16) | (green << 8) | blue;
-                target.setRGB(x, y, combined);
-            }
+    /**
+     * Read up to {@link PayloadHeader#LONG_SIZE} bytes from the start of the
+     * image into the context's header and return how many whole bytes were
+     * read.
+     */
+    private int readHeaderBytes(SampleRaster raster, EngineContext context) {
+        BitWriter bits = context.headerWriter();
+        long pixels = Math.min(pixelsForBytes(PayloadHeader.LONG_SIZE), raster.pixelCount());
+        readBits(raster, 0, pixels, bits, context.samples(CHUNK_PIXELS * CHANNEL_COUNT), null);
+        return PayloadHeader.LONG_SIZE - (int) ((bits.remainingBits() + 7) / 8);
+    }
+
+    /**
+     * A raster for embedding into {@code image} in place. Writing RGB into a
+     * gray, indexed or premultiplied image would silently lose payload bits,
+     * so those are rejected.
+     */
+    private static SampleRaster writableRaster(BufferedImage image) {
+        if (!ImageUtil.holdsRgb(image)) {
+            throw new IllegalArgumentException("Image type cannot hold 8-bit RGB samples; embed into a copy instead.");
+        }
+        return SampleRaster.of(image);
+    }
+
+    private void requireCapacity(int width, int height, long messageLength) {
+        if (PayloadHeader.framedLength(messageLength) > getCapacityBytes(width, height)) {
+            throw new IllegalArgumentException("Message is too large for the provided image.");
         }
+    }
 
-        if (bitIndex < totalBits) {
+    private long capacityBytes(SampleRaster raster) {
+        return raster.pixelCount() * CHANNEL_COUNT * lsbBits / 8L;
+    }
+
+    private void embedInto(BufferedImage image, SampleRaster raster, PayloadHeader payloadHeader, byte[] message,
+                           EngineContext context) {
+        byte[] header = context.header();
+        byte[] trailer = context.trailer();
+        payloadHeader.encode(header);
+        int headerSize = payloadHeader.size();
+        PayloadHeader.putInt(PayloadHeader.checksum(context.crc(), message), trailer, 0);
+        long totalBytes = PayloadHeader.framedLength(message.length);
+        long pixelsNeeded = pixelsForBytes(totalBytes);
+        if (pixelsNeeded > raster.pixelCount()) {
             throw new IllegalStateException("Image exhausted before all bits could be embedded.");
         }
+
+        ProgressTracker progress = track(context, image, totalBytes * 8L);
+        if (runsInParallel(pixelsNeeded, raster.supportsParallelWrites())) {
+            byte[][] parts = {Arrays.copyOf(header, headerSize), message, trailer};
+            pool.invoke(new SegmentTask(0, pixelsNeeded, (firstPixel, endPixel) -> {
+                BitReader bits = new BitReader(slice(parts, firstPixel, endPixel));
+                writeBits(raster, firstPixel, endPixel, bits, new byte[CHUNK_PIXELS * CHANNEL_COUNT], progress);
+            }));
+        } else {
+            BitReader bits = context.reader(ByteBuffer.wrap(message), headerSize);
+            writeBits(raster, 0, pixelsNeeded, bits, context.samples(CHUNK_PIXELS * CHANNEL_COUNT), progress);
+        }
     }
 
-    private int embedIntoChannel(int channelValue, boolean[] bits, int bitIndex) {
-        int result = channelValue & 0xFF;
-        int bitsRemaining = bits.length - bitIndex;
-        int bitsToEmbed = Math.min(AppConfig.LSB_BITS, bitsRemaining);
-        for (int i = 0; i < bitsToEmbed; i++) {
-            boolean bitValue = bits[bitIndex + i];
-            int position = AppConfig.LSB_BITS - 1 - i;
-            if (bitValue) {
-                result |= (1 << position);
-            } else {
-                result &= ~(1 << position);
-            }
+    /**
+     * A tracker reporting to the context's listener, or null when there is no
+     * listener or no image to report rows of.
+     */
+    private static ProgressTracker track(EngineContext context, BufferedImage image, long totalBits) {
+        ProgressListener listener = context.progressListener();
+        return listener == null || image == null ? null : new ProgressTracker(listener, image, totalBits);
+    }
+
+    private boolean runsInParallel(long pixels, boolean parallelSafe) {
+        return parallelSafe && pixels >= parallelThresholdPixels && pool.getParallelism() >= 2;
+    }
+
+    private static void requireFullyRead(BitWriter bits) {
+        if (bits.remainingBits() != 0) {
+            throw new NoMessageFoundException("Image ended before the embedded message was fully read.");
         }
-        return result;
     }
 
-    private int[] extractChannels(int pixel) {
-        int alpha = (pixel >> 24) & 0xFF;
-        int red = (pixel >> 16) & 0xFF;
-        int green = (pixel >> 8) & 0xFF;
-        int blue = pixel & 0xFF;
-        return new int[]{red, green, blue, alpha};
+    /**
+     * The payload bytes (the concatenation of {@code parts}) stored in the
+     * given pixel range. Ranges start on a multiple of 8 pixels, which always
+     * corresponds to a whole byte offset.
+     */
+    private ByteBuffer[] slice(byte[][] parts, long firstPixel, long endPixel) {
+        long from = bytesBeforePixel(firstPixel);
+        long to = bytesBeforePixel(endPixel);
+        ByteBuffer[] slices = new ByteBuffer[parts.length];
+        long partStart = 0;
+        for (int i = 0; i < parts.length; i++) {
+            byte[] part = parts[i];
+            int partFrom = (int) Math.min(Math.max(from - partStart, 0), part.length);
+            int partTo = (int) Math.min(Math.max(to - partStart, 0), part.length);
+            slices[i] = ByteBuffer.wrap(part, partFrom, partTo - partFrom);
+            partStart += part.length;
+        }
+        return slices;
+    }
+
+    private long bytesBeforePixel(long pixel) {
+        return pixel * CHANNEL_COUNT * lsbBits / 8;
     }
 
-    private byte[] encodeLengthPrefixed(byte[] message) {
-        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + message.length).order(ByteOrder.BIG_ENDIAN);
-        buffer.putInt(message.length);
-        buffer.put(message);
-        return buffer.array();
+    private long pixelsForBytes(long bytes) {
+        long samples = (bytes * 8L + lsbBits - 1) / lsbBits;
+        return (samples + CHANNEL_COUNT - 1) / CHANNEL_COUNT;
     }
 
-    private int decodeMessageLength(byte[] lengthBytes) {
-        if (lengthBytes.length < Integer.BYTES) {
-            throw new IllegalArgumentException("Invalid length prefix.");
+    private void writeBits(SampleRaster raster, long firstPixel, long endPixel, BitReader bits, byte[] samples,
+                           ProgressTracker progress) {
+        for (long pixel = firstPixel; pixel < endPixel; pixel += CHUNK_PIXELS) {
+            int chunkPixels = (int) Math.min(CHUNK_PIXELS, endPixel - pixel);
+            long bitsBefore = bits.remainingBits();
+            raster.read(pixel, chunkPixels, samples);
+            kernel.embed(samples, chunkPixels * CHANNEL_COUNT, bits);
+            raster.write(pixel, chunkPixels, samples);
+            if (progress != null) {
+                progress.chunkDone(pixel, chunkPixels, bitsBefore - bits.remainingBits());
+            }
+        }
+    }
+
+    private void readBits(SampleRaster raster, long firstPixel, long endPixel, BitWriter bits, byte[] samples,
+                          ProgressTracker progress) {
+        for (long pixel = firstPixel; pixel < endPixel && bits.remainingBits() > 0; pixel += CHUNK_PIXELS) {
+            int chunkPixels = (int) Math.min(CHUNK_PIXELS, endPixel - pixel);
+            long bitsBefore = bits.remainingBits();
+            raster.read(pixel, chunkPixels, samples);
+            kernel.extract(samples, chunkPixels * CHANNEL_COUNT, bits);
+            if (progress != null) {
+                progress.chunkDone(pixel, chunkPixels, bitsBefore - bits.remainingBits());
+            }
         }
-        int length = ByteBuffer.wrap(lengthBytes).order(ByteOrder.BIG_ENDIAN).getInt();
+    }
+
+    /**
+     * The length prefix of a legacy payload.
+     */
+    private int decodeMessageLength(byte[] lengthBytes) {
+        int length = PayloadHeader.getInt(lengthBytes, 0);
         if (length < 0) {
-            throw new IllegalArgumentException("Negative embedded message length.");
+            throw new NoMessageFoundException("Negative embedded message length.");
         }
         return length;
     }
+
+    /**
+     * Where the message lies in a payload read back from an image.
+     */
+    private record Framing(boolean legacy, int version, int flags, long length, int headerSize) {
+
+        long totalBytes() {
+            return headerSize + length + (legacy ? 0 : PayloadHeader.TRAILER_SIZE);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SegmentAction {
+        void process(long firstPixel, long endPixel);
+    }
+
+    /**
+     * Halves a pixel range until it fits in a single segment.
+     */
+    private static final class SegmentTask extends RecursiveAction {
+
+        private final long firstPixel;
+        private final long endPixel;
+        private final SegmentAction action;
+
+        SegmentTask(long firstPixel, long endPixel, SegmentAction action) {
+            this.firstPixel = firstPixel;
+            this.endPixel = endPixel;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (endPixel - firstPixel <= SEGMENT_PIXELS) {
+                action.process(firstPixel, endPixel);
+                return;
+            }
+            long middle = (firstPixel + (endPixel - firstPixel) / 2) & ~7L;
+            invokeAll(new SegmentTask(firstPixel, middle, action), new SegmentTask(middle, endPixel, action));
+        }
+    }
+
+    /**
+     * Sums the payload bits handled per chunk, possibly across pool threads,
+     * and reports each chunk's rows to the listener.
+     */
+    private static final class ProgressTracker {
+
+        private final ProgressListener listener;
+        private final BufferedImage image;
+        private final int width;
+        private final long totalBits;
+        private final AtomicLong bitsDone = new AtomicLong();
+
+        ProgressTracker(ProgressListener listener, BufferedImage image, long totalBits) {
+            this.listener = listener;
+            this.image = image;
+            this.width = image.getWidth();
+            this.totalBits = totalBits;
+        }
+
+        void chunkDone(long firstPixel, int pixelCount, long bits) {
+            int firstRow = (int) (firstPixel / width);
+            int endRow = (int) ((firstPixel + pixelCount - 1) / width) + 1;
+            listener.progress(image, firstRow, endRow, bitsDone.addAndGet(bits), totalBits);
+        }
+    }
 }
@@ -0,0 +1,154 @@
+package com.stegocam.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Raster-level image copies. Unlike drawing through {@code Graphics2D} these
+ * keep the source's image type, colour model and sample layout, skip Java2D's
+ * compositing loops, and never take the backing arrays out of Java2D's hands,
+ * so both images stay eligible for accelerated rendering.
+ */
+public class ImageUtil {
+
+    private ImageUtil() {
+        // Utility class
+    }
+
+    /**
+     * Create a blank image with the same size, colour model and sample layout
+     * as {@code source}.
+     */
+    public static BufferedImage createCompatible(BufferedImage source) {
+        ColorModel colorModel = source.getColorModel();
+        WritableRaster raster = source.getRaster().createCompatibleWritableRaster(source.getWidth(), source.getHeight());
+        return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Create an independent copy of {@code source}, including alpha.
+     */
+    public static BufferedImage copy(BufferedImage source) {
+        BufferedImage copy = createCompatible(source);
+        copyInto(source, copy);
+        return copy;
+    }
+
+    /**
+     * Whether every pixel of {@code image} stores 8-bit red, green and blue
+     * samples independently and unpremultiplied, so that any RGB value
+     * written through {@link BufferedImage#setRGB} reads back unchanged. Gray,
+     * indexed, premultiplied and custom layouts do not.
+     */
+    public static boolean holdsRgb(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_BGR:
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * The image type {@link #createRgbCompatible} uses for a cover that does
+     * not {@linkplain #holdsRgb hold RGB} itself.
+     */
+    private static int rgbType(BufferedImage source) {
+        return source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    }
+
+    /**
+     * Create a blank image of the same size as {@code source} that can hold
+     * its pixels with 8-bit RGB samples: one with the source's layout when it
+     * {@linkplain #holdsRgb holds RGB}, otherwise TYPE_INT_ARGB or
+     * TYPE_INT_RGB depending on whether the source has alpha.
+     */
+    public static BufferedImage createRgbCompatible(BufferedImage source) {
+        if (holdsRgb(source)) {
+            return createCompatible(source);
+        }
+        return new BufferedImage(source.getWidth(), source.getHeight(), rgbType(source));
+    }
+
+    /**
+     * Whether {@code target} is what {@link #createRgbCompatible} would
+     * create for {@code source}, so {@link #copyRgbInto} can fill it.
+     */
+    public static boolean isRgbCompatible(BufferedImage source, BufferedImage target) {
+        if (holdsRgb(source)) {
+            return isCompatible(source, target);
+        }
+        return source.getWidth() == target.getWidth()
+            && source.getHeight() == target.getHeight()
+            && target.getType() == rgbType(source);
+    }
+
+    /**
+     * {@code source} itself when it {@linkplain #holdsRgb holds RGB},
+     * otherwise a copy converted to TYPE_INT_ARGB or TYPE_INT_RGB.
+     */
+    public static BufferedImage toRgb(BufferedImage source) {
+        if (holdsRgb(source)) {
+            return source;
+        }
+        BufferedImage copy = createRgbCompatible(source);
+        copyRgbInto(source, copy);
+        return copy;
+    }
+
+    /**
+     * Overwrite every pixel of {@code target}, created by
+     * {@link #createRgbCompatible}, with those of {@code source}. Layouts
+     * that already hold RGB are copied like {@link #copyInto}; anything else
+     * is converted a row at a time through the source's colour model.
+     */
+    public static void copyRgbInto(BufferedImage source, BufferedImage target) {
+        if (!isRgbCompatible(source, target)) {
+            throw new IllegalArgumentException("Target image cannot hold the source's pixels.");
+        }
+        if (holdsRgb(source)) {
+            copyInto(source, target);
+            return;
+        }
+        int width = source.getWidth();
+        int[] row = new int[width];
+        for (int y = 0; y < source.getHeight(); y++) {
+            source.getRGB(0, y, width, 1, row, 0, width);
+            target.setRGB(0, y, width, 1, row, 0, width);
+        }
+    }
+
+    /**
+     * Whether {@link #copyInto} can copy {@code source} into {@code target}
+     * without any conversion.
+     */
+    public static boolean isCompatible(BufferedImage source, BufferedImage target) {
+        if (source.getWidth() != target.getWidth()
+                || source.getHeight() != target.getHeight()
+                || source.getType() != target.getType()) {
+            return false;
+        }
+        if (source.getType() != BufferedImage.TYPE_CUSTOM) {
+            return true;
+        }
+        return source.getColorModel().equals(target.getColorModel())
+            && source.getSampleModel().getTransferType() == target.getSampleModel().getTransferType()
+            && source.getSampleModel().getNumDataElements() == target.getSampleModel().getNumDataElements();
+    }
+
+    /**
+     * Overwrite every pixel of {@code target} with those of {@code source}.
+     * For the standard interleaved types this is a row-by-row array copy.
+     */
+    public static void copyInto(BufferedImage source, BufferedImage target) {
+        if (!isCompatible(source, target)) {
+            throw new IllegalArgumentException("Target image does not share the source's size and layout.");
+        }
+        target.getRaster().setDataElements(0, 0, source.getRaster());
+    }
+}
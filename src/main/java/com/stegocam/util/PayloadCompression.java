@@ -0,0 +1,124 @@
+package com.stegocam.util;
+
+import com.stegocam.config.AppConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compression for payloads, applied before encryption. The output is
+ * one mode byte followed by a raw deflate stream. Short inputs are compressed
+ * against a preset dictionary of common English words and JSON fragments,
+ * which is what lets messages of a few dozen bytes shrink at all.
+ * <p>
+ * The dictionary is part of the stored format and must never change.
+ */
+public class PayloadCompression {
+
+    static final byte MODE_DEFLATE = 0;
+    static final byte MODE_DICTIONARY = 1;
+
+    private static final byte[] DICTIONARY = (
+        "{\"id\":\"name\":\"type\":\"value\":\"data\":\"message\":\"text\":\"time\":[],true,false,null}"
+            + " http://https://www..com .org @gmail.com "
+            + "I you he she it we they me him her us them my your our their this that these those "
+            + "a an the and or but if then so because with without for from into onto about over "
+            + "after before between under of on in at to by up out not no yes is are was were be "
+            + "been being have has had do does did will would can could should may might must "
+            + "what when where which who why how all any some more most other such only own same "
+            + "than too very just also now here there today tomorrow yesterday meet meeting please "
+            + "thanks thank you. Hello, Hi, Dear regards, password secret key code address phone "
+            + "number money account bank send sent receive call tonight morning evening the "
+        ).getBytes(StandardCharsets.UTF_8);
+
+    private PayloadCompression() {
+        // Utility class
+    }
+
+    /**
+     * Compress {@code data} at {@link AppConfig#COMPRESSION_LEVEL}, or return
+     * null when that would not make it smaller.
+     */
+    public static byte[] compress(byte[] data) {
+        return compress(data, AppConfig.COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Compress {@code data} at the given {@link Deflater} level, or return
+     * null when that would not make it smaller. Inputs of at most
+     * {@link AppConfig#COMPRESSION_DICTIONARY_LIMIT} bytes use the preset
+     * dictionary.
+     */
+    public static byte[] compress(byte[] data, int level) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data to compress cannot be null");
+        }
+        if (data.length < 2) {
+            return null;
+        }
+        boolean useDictionary = data.length <= AppConfig.COMPRESSION_DICTIONARY_LIMIT;
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (useDictionary) {
+                deflater.setDictionary(DICTIONARY);
+            }
+            deflater.setInput(data);
+            deflater.finish();
+            // Anything that does not fit in fewer bytes than the input is not worth keeping
+            byte[] output = new byte[data.length - 1];
+            output[0] = useDictionary ? MODE_DICTIONARY : MODE_DEFLATE;
+            int length = 1;
+            while (!deflater.finished()) {
+                if (length == output.length) {
+                    return null;
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            return Arrays.copyOf(output, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reverse {@link #compress}, refusing to produce more than
+     * {@code maxLength} bytes.
+     */
+    public static byte[] decompress(byte[] data, int maxLength) {
+        if (data == null || data.length == 0) {
+            throw new IllegalArgumentException("Compressed payload is empty.");
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            if (data[0] == MODE_DICTIONARY) {
+                inflater.setDictionary(DICTIONARY);
+            } else if (data[0] != MODE_DEFLATE) {
+                throw new IllegalArgumentException("Unknown compression mode " + data[0] + ".");
+            }
+            inflater.setInput(data, 1, data.length - 1);
+            byte[] output = new byte[(int) Math.min(maxLength, Math.max(64, data.length * 4L))];
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == output.length) {
+                    if (output.length >= maxLength) {
+                        throw new IllegalArgumentException("Decompressed payload exceeds " + maxLength + " bytes.");
+                    }
+                    output = Arrays.copyOf(output, (int) Math.min(maxLength, output.length * 2L));
+                }
+                int inflated = inflater.inflate(output, length, output.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Compressed payload is truncated.");
+                }
+                length += inflated;
+            }
+            return length == output.length ? output : Arrays.copyOf(output, length);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Compressed payload is corrupt.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,15 +1,29 @@
 package com.stegocam;
 
 import com.stegocam.io.ImageHandler;
+import com.stegocam.io.ImageInfo;
+import com.stegocam.io.ThumbnailCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Unit tests for ImageHandler component
@@ -91,6 +105,182 @@ public class ImageHandlerTests {
         }
     }
     
+    @Test
+    void testImageCopyKeepsCustomLayoutAndAlpha() {
+        ColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), true, false,
+            Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
+        WritableRaster raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, 20, 10, 4, null);
+        BufferedImage original = new BufferedImage(colorModel, raster, false, null);
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 20; x++) {
+                original.setRGB(x, y, (x * 12) << 24 | (y * 20) << 16 | x << 8 | 77);
+            }
+        }
+
+        BufferedImage copy = imageHandler.copyImage(original);
+        copy.setRGB(0, 0, 0xFFFFFFFF);
+
+        assertEquals(BufferedImage.TYPE_CUSTOM, copy.getType(), "Custom layouts should not be converted");
+        assertEquals(original.getColorModel(), copy.getColorModel(), "Copy should keep the colour model");
+        assertNotEquals(copy.getRGB(0, 0), original.getRGB(0, 0), "Copy should not share pixels with the original");
+        for (int y = 0; y < 10; y++) {
+            for (int x = (y == 0 ? 1 : 0); x < 20; x++) {
+                assertEquals(original.getRGB(x, y), copy.getRGB(x, y), "Pixel at (" + x + "," + y + ") should match");
+            }
+        }
+    }
+
+    @Test
+    void testLoadPreviewSubsamplesToFit() {
+        BufferedImage large = new BufferedImage(1000, 400, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 400; y++) {
+            for (int x = 0; x < 1000; x++) {
+                large.setRGB(x, y, x << 12 | y);
+            }
+        }
+        String path = tempDir.resolve("large.png").toString();
+        assertTrue(imageHandler.saveImage(large, path), "PNG save should succeed");
+
+        BufferedImage preview = imageHandler.loadPreview(path, 250, 180);
+        assertNotNull(preview, "Preview should load");
+        assertEquals(250, preview.getWidth(), "Every fourth column should be decoded");
+        assertEquals(100, preview.getHeight(), "Every fourth row should be decoded");
+        assertEquals(large.getRGB(996, 396), preview.getRGB(249, 99), "Preview should sample the source grid");
+
+        BufferedImage region = imageHandler.loadPreview(path, new Rectangle(500, 200, 100, 100), 50, 50);
+        assertNotNull(region, "Region preview should load");
+        assertEquals(50, region.getWidth(), "Region should be subsampled to fit");
+        assertEquals(large.getRGB(500, 200), region.getRGB(0, 0), "Region should start at its origin");
+
+        assertNull(imageHandler.loadPreview("non_existent_file.png", 10, 10), "Missing files should give no preview");
+    }
+
+    @Test
+    void testTranscodeInBandsVisitsEveryRowOnce() {
+        BufferedImage source = new BufferedImage(300, 100, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 300; x++) {
+                source.setRGB(x, y, x << 12 | y);
+            }
+        }
+        String input = tempDir.resolve("bands_in.png").toString();
+        String output = tempDir.resolve("bands_out.png").toString();
+        assertTrue(imageHandler.saveImage(source, input), "PNG save should succeed");
+
+        List<Integer> bandHeights = new ArrayList<>();
+        assertTrue(imageHandler.transcodeInBands(input, output, 32, band -> {
+            bandHeights.add(band.getHeight());
+            band.setRGB(0, 0, 0xFFFFFF);
+        }));
+        assertEquals(List.of(32, 32, 32, 4), bandHeights, "Bands should cover the image top to bottom");
+
+        BufferedImage result = imageHandler.loadImage(output);
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 300; x++) {
+                int expected = x == 0 && y % 32 == 0 ? 0xFFFFFF : source.getRGB(x, y) & 0xFFFFFF;
+                assertEquals(expected, result.getRGB(x, y) & 0xFFFFFF, "Pixel (" + x + "," + y + ") differs");
+            }
+        }
+        assertFalse(imageHandler.transcodeInBands("non_existent_file.png", output, 32, band -> { }));
+    }
+
+    @Test
+    void testProbeReadsHeaderOnly() {
+        String rgbPath = tempDir.resolve("probe.png").toString();
+        assertTrue(imageHandler.saveImage(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), rgbPath),
+            "PNG save should succeed");
+        ImageInfo rgb = imageHandler.probeImage(rgbPath);
+        assertNotNull(rgb, "Probe should read the header");
+        assertEquals("png", rgb.format());
+        assertEquals(640, rgb.width());
+        assertEquals(480, rgb.height());
+        assertEquals(8, rgb.bitDepth());
+        assertEquals(ImageInfo.ColourType.RGB, rgb.colourType());
+        assertFalse(rgb.hasAlpha(), "RGB PNG should have no alpha");
+        assertEquals("640x480", imageHandler.getImageDimensions(rgbPath));
+
+        String alphaPath = tempDir.resolve("probe_alpha.png").toString();
+        assertTrue(imageHandler.saveImage(new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB), alphaPath),
+            "PNG save should succeed");
+        assertTrue(imageHandler.probeImage(alphaPath).hasAlpha(), "ARGB PNG should report alpha");
+
+        String grayPath = tempDir.resolve("probe_gray.bmp").toString();
+        assertTrue(imageHandler.saveImage(new BufferedImage(5, 5, BufferedImage.TYPE_BYTE_GRAY), grayPath),
+            "BMP save should succeed");
+        ImageInfo gray = imageHandler.probeImage(grayPath);
+        assertEquals("bmp", gray.format());
+        assertEquals(5, gray.width());
+
+        assertNull(imageHandler.probeImage("non_existent_file.png"), "Missing files should not probe");
+    }
+
+    @Test
+    void testThumbnailCacheReusesEntriesUntilFileChanges() throws IOException {
+        BufferedImage image = new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0x123456);
+        Path source = tempDir.resolve("cover.png");
+        assertTrue(imageHandler.saveImage(image, source.toString()), "PNG save should succeed");
+        Path cacheDir = tempDir.resolve("thumbs");
+        ThumbnailCache cache = new ThumbnailCache(imageHandler, cacheDir, 64);
+
+        BufferedImage first = cache.getThumbnail(source.toString());
+        assertNotNull(first, "Thumbnail should load");
+        assertEquals(60, first.getWidth(), "Thumbnail should fit the requested size");
+        assertEquals(0x123456, first.getRGB(0, 0) & 0xFFFFFF, "Thumbnail should keep the sampled pixels");
+        try (var entries = Files.list(cacheDir)) {
+            assertEquals(1, entries.count(), "Thumbnail should be cached on disk");
+        }
+
+        assertNotNull(cache.getThumbnail(source.toString()), "Cached thumbnail should load");
+        try (var entries = Files.list(cacheDir)) {
+            assertEquals(1, entries.count(), "Unchanged files should reuse their entry");
+        }
+
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 5000));
+        assertNotNull(cache.getThumbnail(source.toString()), "Modified file should still give a thumbnail");
+        try (var entries = Files.list(cacheDir)) {
+            assertEquals(1, entries.count(), "Modified files should replace their entry");
+        }
+
+        cache.remove(source.toString());
+        try (var entries = Files.list(cacheDir)) {
+            assertEquals(0, entries.count(), "Removed files should lose their entry");
+        }
+    }
+
+    @Test
+    void testThumbnailCacheEvictsLeastRecentlyUsed() throws IOException {
+        Path cacheDir = tempDir.resolve("bounded");
+        ThumbnailCache cache = new ThumbnailCache(imageHandler, cacheDir, 16, 2, Duration.ofDays(1));
+        Path[] sources = new Path[3];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = tempDir.resolve("cover" + i + ".png");
+            assertTrue(imageHandler.saveImage(new BufferedImage(32, 32, BufferedImage.TYPE_INT_RGB),
+                sources[i].toString()), "PNG save should succeed");
+            assertNotNull(cache.getThumbnail(sources[i].toString()), "Thumbnail should load");
+            try (var entries = Files.list(cacheDir)) {
+                for (Path entry : entries.toList()) {
+                    // Older entries look used longer ago
+                    Files.setLastModifiedTime(entry,
+                        FileTime.fromMillis(Files.getLastModifiedTime(entry).toMillis() - 10_000));
+                }
+            }
+        }
+        try (var entries = Files.list(cacheDir)) {
+            assertEquals(2, entries.count(), "Cache should stay within its size limit");
+        }
+
+        cache.remove(sources[0].toString());
+        cache.remove(sources[1].toString());
+        try (var entries = Files.list(cacheDir)) {
+            assertEquals(1, entries.count(), "Least recently used entry should have been evicted");
+        }
+        cache.remove(sources[2].toString());
+        try (var entries = Files.list(cacheDir)) {
+            assertEquals(0, entries.count(), "Newest entry should have been kept");
+        }
+    }
+
     @Test
     void testFormatFromExtension() {
         // This tests the private method indirectly through saveImage behavior
@@ -1,14 +1,48 @@
 package com.stegocam;
 
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+import javax.imageio.ImageIO;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.stegocam.config.AppConfig;
+import com.stegocam.io.ImageHandler;
+import com.stegocam.stego.BandEmbedder;
+import com.stegocam.stego.EngineContext;
+import com.stegocam.stego.NoMessageFoundException;
+import com.stegocam.stego.PayloadChannel;
+import com.stegocam.stego.PayloadHeader;
+import com.stegocam.stego.PixelStore;
 import com.stegocam.stego.StegoEngine;
 
 /**
@@ -105,16 +139,21 @@ public class StegoTests {
         
         boolean cannotHold = stegoEngine.canHoldMessage(testImage, expectedCapacity + 1);
         assertFalse(cannotHold, "Image should not be able to hold more than capacity");
+
+        assertEquals(expectedCapacity, stegoEngine.getCapacityBytes(10, 10), "Capacity should follow from the size alone");
+        assertTrue(stegoEngine.canHoldMessage(10, 10, expectedCapacity), "Probed sizes should give the same answer");
+        assertFalse(stegoEngine.canHoldMessage(10, 10, expectedCapacity + 1), "Probed sizes should give the same answer");
     }
     
     @Test
     void testEmptyMessageEmbedExtract() {
-        BufferedImage testImage = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        // Smallest square cover with room for the header and trailer
+        BufferedImage testImage = new BufferedImage(6, 6, BufferedImage.TYPE_INT_RGB);
         
         // Fill with test pattern
-        for (int y = 0; y < 4; y++) {
-            for (int x = 0; x < 4; x++) {
-                int rgb = (x * 64) << 16 | (y * 64) << 8 | ((x + y) * 32);
+        for (int y = 0; y < 6; y++) {
+            for (int x = 0; x < 6; x++) {
+                int rgb = (x * 42) << 16 | (y * 42) << 8 | ((x + y) * 21);
                 testImage.setRGB(x, y, rgb);
             }
         }
@@ -149,4 +188,464 @@ public class StegoTests {
         assertEquals(testMessage, extractedMessage, "Extracted message should match original");
     }
 
+    @Test
+    void testBinaryPayloadRoundTrip() {
+        BufferedImage testImage = createPatternImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        byte[] payload = new byte[1024];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i * 31 + 7);
+        }
+
+        BufferedImage stegoImage = stegoEngine.embedMessage(testImage, payload);
+
+        assertArrayEquals(payload, stegoEngine.extractMessage(stegoImage), "Every byte value should survive the round trip");
+    }
+
+    @Test
+    void testParallelEmbedMatchesSerial() {
+        BufferedImage testImage = createPatternImage(640, 400, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] payload = new byte[160_000];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i ^ (i >>> 8));
+        }
+
+        StegoEngine serialEngine = new StegoEngine(Long.MAX_VALUE, ForkJoinPool.commonPool());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            StegoEngine parallelEngine = new StegoEngine(0, pool);
+            BufferedImage serial = serialEngine.embedMessage(testImage, payload);
+            BufferedImage parallel = parallelEngine.embedMessage(testImage, payload);
+
+            assertArrayEquals(
+                serial.getRGB(0, 0, 640, 400, null, 0, 640),
+                parallel.getRGB(0, 0, 640, 400, null, 0, 640),
+                "Parallel embedding should produce the same pixels as serial embedding"
+            );
+            assertArrayEquals(payload, parallelEngine.extractMessage(serial), "Parallel extraction should read serial output");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testEveryLsbDepthMatchesBitwiseReference() {
+        byte[] messageBytes = "Kernels must keep the existing bit layout".getBytes();
+        for (int lsbBits = 1; lsbBits <= 8; lsbBits++) {
+            StegoEngine engine = new StegoEngine(lsbBits);
+            BufferedImage cover = createPatternImage(29, 31, BufferedImage.TYPE_INT_RGB);
+
+            BufferedImage stegoImage = engine.embedMessage(cover, messageBytes);
+            BufferedImage expected = embedReference(cover, framedPayload(messageBytes), lsbBits);
+
+            assertArrayEquals(
+                expected.getRGB(0, 0, 29, 31, null, 0, 29),
+                stegoImage.getRGB(0, 0, 29, 31, null, 0, 29),
+                "Layout differs for " + lsbBits + " LSB bits"
+            );
+            assertArrayEquals(messageBytes, engine.extractMessage(stegoImage), "Round trip failed for " + lsbBits + " LSB bits");
+        }
+    }
+
+    @Test
+    void testLegacyHeaderlessPayloadStillExtracts() {
+        byte[] messageBytes = "Written before payloads had a header".getBytes();
+        byte[] legacyPayload = ByteBuffer.allocate(Integer.BYTES + messageBytes.length)
+            .putInt(messageBytes.length).put(messageBytes).array();
+        BufferedImage legacyImage = embedReference(createPatternImage(40, 30, BufferedImage.TYPE_INT_RGB),
+            legacyPayload, AppConfig.LSB_BITS);
+
+        assertArrayEquals(messageBytes, stegoEngine.extractMessage(legacyImage), "Legacy payloads should still be read");
+        assertNull(stegoEngine.readHeader(legacyImage), "Legacy payloads have no header");
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            assertArrayEquals(messageBytes, new StegoEngine(0, pool).extractMessage(legacyImage),
+                "Legacy payloads should also be read on the parallel path");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testCleanImageIsRejectedFromItsHeader() {
+        BufferedImage clean = createPatternImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        assertNull(stegoEngine.readHeader(clean), "A clean image should have no header");
+        assertThrows(NoMessageFoundException.class, () -> stegoEngine.extractMessage(clean));
+
+        BufferedImage stegoImage = Steganography.embedText(clean, "typed payload");
+        PayloadHeader header = stegoEngine.readHeader(stegoImage);
+        assertNotNull(header, "Embedded payloads should have a header");
+        assertEquals(PayloadHeader.VERSION, header.version());
+        assertEquals(PayloadHeader.TYPE_TEXT, header.type());
+        assertFalse(header.isEncrypted());
+        assertEquals("typed payload".length(), header.length());
+    }
+
+    @Test
+    void testDamagedMessageFailsChecksum() {
+        byte[] messageBytes = "Every bit of this is covered by the trailer".getBytes();
+        BufferedImage stegoImage = stegoEngine.embedMessage(createPatternImage(40, 30, BufferedImage.TYPE_INT_RGB), messageBytes);
+        // Pixel 20 lies past the header and inside the message body
+        stegoImage.setRGB(20, 0, stegoImage.getRGB(20, 0) ^ 0x000001);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+            () -> stegoEngine.extractMessage(stegoImage));
+        assertFalse(ex instanceof NoMessageFoundException, "A damaged message is still a message");
+        assertTrue(ex.getMessage().contains("checksum"), ex.getMessage());
+    }
+
+    @Test
+    void testStreamedPayloadMatchesBufferedEmbed() throws IOException {
+        // Spans several pixel chunks, with the body ending part-way through one
+        byte[] secret = new byte[5003];
+        new Random(17).nextBytes(secret);
+        BufferedImage expected = createPatternImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        BufferedImage streamed = createPatternImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        EngineContext context = new EngineContext();
+
+        stegoEngine.embedMessageInPlace(expected, secret, PayloadHeader.TYPE_BYTES, context);
+        stegoEngine.embedStreamInPlace(streamed, new ByteArrayInputStream(secret), secret.length,
+            PayloadHeader.TYPE_BYTES, context);
+        assertSamePixels(expected, streamed);
+
+        ByteArrayOutputStream extracted = new ByteArrayOutputStream();
+        PayloadHeader header = stegoEngine.extractStream(streamed, extracted, context);
+        assertEquals(secret.length, header.length());
+        assertEquals(PayloadHeader.TYPE_BYTES, header.type());
+        assertArrayEquals(secret, extracted.toByteArray());
+
+        BufferedImage cover = createPatternImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        assertThrows(IllegalArgumentException.class, () -> stegoEngine.embedStreamInPlace(cover,
+            new ByteArrayInputStream(secret, 0, 100), secret.length, 0, context), "Short input should be rejected");
+    }
+
+    @Test
+    void testPixelStoreMatchesImageEmbed() throws IOException {
+        byte[] message = new byte[3000];
+        new Random(37).nextBytes(message);
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB}) {
+            BufferedImage image = createPatternImage(90, 70, type);
+            image.setRGB(5, 0, 0x40ABCDEF);
+            PixelStore store = PixelStore.copyOf(image);
+            assertEquals(type == BufferedImage.TYPE_INT_ARGB, store.hasAlpha());
+            assertEquals(image.getRGB(5, 0), store.getRGB(5, 0), "Stores should keep every channel");
+
+            stegoEngine.embedMessageInPlace(image, message, PayloadHeader.TYPE_BYTES, new EngineContext());
+            stegoEngine.embedMessageInPlace(store, message, PayloadHeader.TYPE_BYTES, new EngineContext());
+            assertArrayEquals(image.getRGB(0, 0, 90, 70, null, 0, 90),
+                store.toBufferedImage().getRGB(0, 0, 90, 70, null, 0, 90), "Layout differs for type " + type);
+
+            assertArrayEquals(message, stegoEngine.extractPayload(store, new EngineContext()).data());
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            stegoEngine.extractStream(store, Channels.newChannel(streamed), new EngineContext());
+            assertArrayEquals(message, streamed.toByteArray());
+        }
+    }
+
+    @Test
+    void testLongPayloadHeaderRoundTrips() {
+        long length = 3_000_000_000L;
+        PayloadHeader header = new PayloadHeader(PayloadHeader.TYPE_BYTES, length);
+        assertEquals(PayloadHeader.LONG_VERSION, header.version(), "Lengths past 2 GB need the wide header");
+        assertEquals(PayloadHeader.LONG_SIZE, header.size());
+        assertEquals(PayloadHeader.LONG_SIZE + length + PayloadHeader.TRAILER_SIZE, PayloadHeader.framedLength(length));
+        assertEquals(PayloadHeader.SIZE, new PayloadHeader(0, 100).size(), "Short messages keep the old layout");
+        assertThrows(IllegalArgumentException.class, () -> new PayloadHeader(PayloadHeader.VERSION, 0, length));
+
+        ByteBuffer bytes = ByteBuffer.allocate(PayloadHeader.LONG_SIZE)
+            .putInt(PayloadHeader.MAGIC).put((byte) PayloadHeader.LONG_VERSION).put((byte) 0).putLong(length);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.array(), 0, PayloadHeader.LONG_SIZE - 2);
+        bytes.putShort((short) crc.getValue());
+        BufferedImage image = embedReference(createPatternImage(40, 30, BufferedImage.TYPE_INT_RGB), bytes.array(),
+            AppConfig.LSB_BITS);
+
+        PayloadHeader read = stegoEngine.readHeader(image);
+        assertNotNull(read, "Wide headers should be recognised");
+        assertEquals(length, read.length());
+        assertThrows(NoMessageFoundException.class, () -> stegoEngine.extractMessage(image),
+            "A length beyond the cover's capacity should be rejected from the header");
+    }
+
+    @Test
+    void testBandedEmbedMatchesWholeImageEmbed() throws IOException {
+        Path dir = Files.createTempDirectory("stegocam_bands");
+        Path cover = dir.resolve("cover.png");
+        Path output = dir.resolve("banded.png");
+        byte[] secret = new byte[4000];
+        new Random(31).nextBytes(secret);
+        assertTrue(ImageIO.write(createPatternImage(150, 97, BufferedImage.TYPE_INT_RGB), "png", cover.toFile()));
+        ImageHandler imageHandler = new ImageHandler();
+
+        // Band boundaries land mid-payload and mid-byte
+        BandEmbedder embedder = stegoEngine.embedInBands(150, 97, secret, PayloadHeader.TYPE_BYTES);
+        assertTrue(imageHandler.transcodeInBands(cover.toString(), output.toString(), 7, embedder::embed));
+        assertTrue(embedder.isComplete(), "Every payload bit should have been embedded");
+
+        BufferedImage expected = imageHandler.loadImage(cover.toString());
+        stegoEngine.embedMessageInPlace(expected, secret, PayloadHeader.TYPE_BYTES, new EngineContext());
+        BufferedImage banded = imageHandler.loadImage(output.toString());
+        assertSamePixels(expected, banded);
+    }
+
+    @Test
+    void testPayloadChannelReadsAndPatchesRanges() throws IOException {
+        // Three bits per channel, so byte boundaries fall mid-sample
+        StegoEngine engine = new StegoEngine(3);
+        byte[] message = new byte[6000];
+        new Random(23).nextBytes(message);
+        BufferedImage image = createPatternImage(100, 80, BufferedImage.TYPE_INT_RGB);
+        engine.embedMessageInPlace(image, message, PayloadHeader.TYPE_BYTES, new EngineContext());
+
+        try (PayloadChannel channel = engine.openChannel(image, false)) {
+            assertEquals(message.length, channel.size());
+            for (int start : new int[]{0, 1, 1234, 5990}) {
+                ByteBuffer range = ByteBuffer.allocate(Math.min(77, message.length - start));
+                assertEquals(range.capacity(), channel.position(start).read(range));
+                assertArrayEquals(Arrays.copyOfRange(message, start, start + range.capacity()), range.array());
+            }
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)), "Reads past the end should report end of stream");
+            assertThrows(NonWritableChannelException.class, () -> channel.write(ByteBuffer.allocate(1)));
+        }
+
+        byte[] patched = message.clone();
+        byte[] patch = new byte[5000];
+        new Random(29).nextBytes(patch);
+        System.arraycopy(patch, 0, patched, 777, patch.length);
+        patched[5999] = 42;
+        try (PayloadChannel channel = engine.openChannel(image, true)) {
+            channel.position(777).write(ByteBuffer.wrap(patch));
+            channel.position(5999).write(ByteBuffer.wrap(new byte[]{42}));
+            assertThrows(IllegalArgumentException.class, () -> channel.write(ByteBuffer.allocate(1)),
+                "Writes past the end should be rejected");
+        }
+
+        // Same pixels as embedding the patched message outright, trailer included
+        BufferedImage expected = createPatternImage(100, 80, BufferedImage.TYPE_INT_RGB);
+        engine.embedMessageInPlace(expected, patched, PayloadHeader.TYPE_BYTES, new EngineContext());
+        assertSamePixels(expected, image);
+        assertArrayEquals(patched, engine.extractMessage(image));
+    }
+
+    @Test
+    void testRasterPathMatchesColourModelPath() {
+        byte[] messageBytes = "Raster-direct embedding must match getRGB/setRGB".getBytes();
+        // TYPE_INT_ARGB_PRE goes through the colour model; opaque pixels round-trip exactly
+        BufferedImage reference = stegoEngine.embedMessage(createPatternImage(37, 23, BufferedImage.TYPE_INT_ARGB_PRE), messageBytes);
+
+        int[] types = {
+            BufferedImage.TYPE_INT_RGB,
+            BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_3BYTE_BGR,
+            BufferedImage.TYPE_4BYTE_ABGR
+        };
+        for (int type : types) {
+            BufferedImage stegoImage = stegoEngine.embedMessage(createPatternImage(37, 23, type), messageBytes);
+            assertEquals(type, stegoImage.getType(), "Image type should be preserved");
+            for (int y = 0; y < 23; y++) {
+                for (int x = 0; x < 37; x++) {
+                    assertEquals(reference.getRGB(x, y), stegoImage.getRGB(x, y),
+                        "Pixel (" + x + "," + y + ") differs for type " + type);
+                }
+            }
+            assertArrayEquals(messageBytes, stegoEngine.extractMessage(stegoImage), "Round trip failed for type " + type);
+        }
+    }
+
+    @Test
+    void testExtractFromSubimage() {
+        BufferedImage parent = createPatternImage(40, 40, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] messageBytes = "offset raster".getBytes();
+
+        BufferedImage stegoImage = stegoEngine.embedMessage(parent.getSubimage(5, 7, 20, 20), messageBytes);
+        BufferedImage container = createPatternImage(40, 40, BufferedImage.TYPE_3BYTE_BGR);
+        container.getRaster().setRect(5, 7, stegoImage.getRaster());
+
+        assertArrayEquals(messageBytes, stegoEngine.extractMessage(container.getSubimage(5, 7, 20, 20)));
+    }
+
+    @Test
+    void testEmbedInPlaceMatchesCopyingEmbed() {
+        BufferedImage cover = createPatternImage(60, 40, BufferedImage.TYPE_4BYTE_ABGR);
+        cover.setRGB(3, 0, 0x40ABCDEF);
+        byte[] messageBytes = "written in place".getBytes();
+
+        BufferedImage expected = stegoEngine.embedMessage(cover, messageBytes);
+        assertEquals(cover.getType(), expected.getType(), "Copy should keep the cover's type");
+        stegoEngine.embedMessageInPlace(cover, messageBytes);
+
+        assertSamePixels(expected, cover);
+        assertArrayEquals(messageBytes, stegoEngine.extractMessage(cover));
+    }
+
+    @Test
+    void testGrayAlphaCoverIsConvertedToRgb() throws IOException {
+        Path dir = Files.createTempDirectory("stegocam_gray");
+        Path coverPath = dir.resolve("gray-alpha.png");
+        ComponentColorModel grayAlpha = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+            true, false, Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
+        BufferedImage gray = new BufferedImage(grayAlpha, grayAlpha.createCompatibleWritableRaster(64, 48), false, null);
+        for (int y = 0; y < gray.getHeight(); y++) {
+            for (int x = 0; x < gray.getWidth(); x++) {
+                gray.getRaster().setPixel(x, y, new int[]{(x * 5 + y) & 0xFF, 0xFF});
+            }
+        }
+        assertTrue(ImageIO.write(gray, "png", coverPath.toFile()));
+        BufferedImage cover = ImageIO.read(coverPath.toFile());
+        assertEquals(BufferedImage.TYPE_CUSTOM, cover.getType(), "Gray+alpha PNGs should load as TYPE_CUSTOM");
+        byte[] messageBytes = "hello world".getBytes(StandardCharsets.UTF_8);
+
+        BufferedImage stegoImage = stegoEngine.embedMessage(cover, messageBytes);
+
+        assertEquals(BufferedImage.TYPE_INT_ARGB, stegoImage.getType(), "Gray+alpha covers should become ARGB");
+        assertArrayEquals(messageBytes, stegoEngine.extractMessage(stegoImage));
+        Path output = dir.resolve("stego.png");
+        assertTrue(ImageIO.write(stegoImage, "png", output.toFile()));
+        assertArrayEquals(messageBytes, stegoEngine.extractMessage(ImageIO.read(output.toFile())));
+        assertThrows(IllegalArgumentException.class, () -> stegoEngine.embedMessageInPlace(cover, messageBytes),
+            "In-place embeds cannot convert the cover");
+    }
+
+    @Test
+    void testEngineContextReusesTargetAndMatchesFreshEmbed() {
+        EngineContext context = new EngineContext();
+        BufferedImage first = createPatternImage(48, 32, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage second = createPatternImage(48, 32, BufferedImage.TYPE_INT_ARGB);
+        second.setRGB(0, 0, 0x00123456);
+
+        BufferedImage firstResult = stegoEngine.embedMessage(first, "first".getBytes(), context);
+        BufferedImage secondResult = stegoEngine.embedMessage(second, "second".getBytes(), context);
+
+        assertSame(firstResult, secondResult, "Same-sized covers should reuse the pooled target");
+        BufferedImage expected = stegoEngine.embedMessage(second, "second".getBytes());
+        assertSamePixels(expected, secondResult);
+        assertArrayEquals("second".getBytes(), stegoEngine.extractMessage(secondResult, context));
+    }
+
+    @Test
+    void testProgressListenerCoversEveryPayloadBit() {
+        BufferedImage cover = createPatternImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        byte[] payload = new byte[20_000];
+        Arrays.fill(payload, (byte) 0x33);
+        long expectedBits = PayloadHeader.framedLength(payload.length) * 8L;
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (StegoEngine engine : new StegoEngine[]{
+                    new StegoEngine(Long.MAX_VALUE, ForkJoinPool.commonPool()), new StegoEngine(0, pool)}) {
+                AtomicLong maxBitsDone = new AtomicLong();
+                AtomicLong rowsReported = new AtomicLong();
+                EngineContext context = new EngineContext();
+                context.setProgressListener((image, firstRow, endRow, bitsDone, totalBits) -> {
+                    assertEquals(expectedBits, totalBits);
+                    assertTrue(firstRow >= 0 && endRow <= image.getHeight() && firstRow < endRow);
+                    maxBitsDone.accumulateAndGet(bitsDone, Math::max);
+                    rowsReported.addAndGet(endRow - firstRow);
+                });
+
+                BufferedImage stegoImage = engine.embedMessage(cover, payload, context);
+
+                assertEquals(expectedBits, maxBitsDone.get(), "Progress should end at the total bit count");
+                assertTrue(rowsReported.get() >= engineRowsFor(payload.length, 300), "Every touched row should be reported");
+                assertArrayEquals(payload, engine.extractMessage(stegoImage));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testEngineContextSteadyStateAllocatesAlmostNothing() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+            && bean.isThreadAllocatedMemorySupported(), "Per-thread allocation counters unavailable");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        BufferedImage cover = createPatternImage(256, 256, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] payload = new byte[16 * 1024];
+        Arrays.fill(payload, (byte) 0x5A);
+        EngineContext context = EngineContext.forCurrentThread();
+        int iterations = 200;
+        for (int i = 0; i < iterations; i++) {
+            stegoEngine.embedMessage(cover, payload, context);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            stegoEngine.embedMessage(cover, payload, context);
+        }
+        long perEmbed = (threads.getCurrentThreadAllocatedBytes() - before) / iterations;
+
+        // A fresh copy of the cover alone would be 192 KB
+        assertTrue(perEmbed < 1024, "Steady-state embed allocated " + perEmbed + " bytes per call");
+        context.releaseTarget();
+    }
+
+    private long engineRowsFor(int messageLength, int width) {
+        long samples = (PayloadHeader.framedLength(messageLength) * 8L + AppConfig.LSB_BITS - 1) / AppConfig.LSB_BITS;
+        long pixels = (samples + 2) / 3;
+        return (pixels + width - 1) / width;
+    }
+
+    /**
+     * The header, message and CRC32C trailer, laid out independently of
+     * {@link PayloadHeader}.
+     */
+    private byte[] framedPayload(byte[] message) {
+        ByteBuffer header = ByteBuffer.allocate(PayloadHeader.SIZE)
+            .putInt(PayloadHeader.MAGIC).put((byte) PayloadHeader.VERSION).put((byte) 0).putInt(message.length);
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 0, header.position());
+        header.putShort((short) crc.getValue());
+        crc.reset();
+        crc.update(message);
+        return ByteBuffer.allocate((int) PayloadHeader.framedLength(message.length))
+            .put(header.array()).put(message).putInt((int) crc.getValue()).array();
+    }
+
+    /**
+     * Straightforward bit-by-bit embedding of a complete payload built on the
+     * public helpers.
+     */
+    private BufferedImage embedReference(BufferedImage cover, byte[] payload, int lsbBits) {
+        boolean[] bits = stegoEngine.bytesToBits(payload);
+        BufferedImage result = createPatternImage(cover.getWidth(), cover.getHeight(), cover.getType());
+        int bitIndex = 0;
+        for (int y = 0; y < result.getHeight() && bitIndex < bits.length; y++) {
+            for (int x = 0; x < result.getWidth() && bitIndex < bits.length; x++) {
+                int pixel = result.getRGB(x, y);
+                for (int shift = 16; shift >= 0 && bitIndex < bits.length; shift -= 8) {
+                    int count = Math.min(lsbBits, bits.length - bitIndex);
+                    boolean[] chunk = Arrays.copyOfRange(bits, bitIndex, bitIndex + count);
+                    int channel = stegoEngine.embedBits((pixel >> shift) & 0xFF, chunk, lsbBits - count);
+                    pixel = (pixel & ~(0xFF << shift)) | (channel << shift);
+                    bitIndex += count;
+                }
+                result.setRGB(x, y, pixel);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Assert that both images hold the same RGB value at every pixel.
+     */
+    private void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "Pixel (" + x + "," + y + ") differs");
+            }
+        }
+    }
+
+    private BufferedImage createPatternImage(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = ((x * 7) & 0xFF) << 16 | ((y * 11) & 0xFF) << 8 | ((x * y) & 0xFF);
+                image.setRGB(x, y, 0xFF000000 | rgb);
+            }
+        }
+        return image;
+    }
+
 }
@@ -0,0 +1,106 @@
+package com.stegocam.controller;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.stegocam.crypto.EncryptionSession;
+import com.stegocam.stego.Payload;
+import com.stegocam.stego.StegoEngine;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Unit tests for StegoController workflows that go through image files
+ */
+public class StegoControllerTest {
+
+    @Test
+    public void testSealedSecretRoundTripsThroughImage() throws IOException {
+        Path dir = Files.createTempDirectory("stegocam_seal");
+        String output = dir.resolve("sealed.png").toString();
+        StegoController controller = new StegoController();
+        byte[] secret = "Compressed before it is encrypted. ".repeat(40).getBytes(StandardCharsets.UTF_8);
+
+        Payload sealed = controller.sealSecret(secret, "sealKey");
+        assertTrue(sealed.isEncrypted(), "Sealed payloads are encrypted");
+        assertTrue(sealed.isCompressed(), "Repetitive secrets should be compressed");
+        assertTrue(sealed.data().length < secret.length, "Compression should shrink what is embedded");
+        assertTrue(controller.embedPayload(createPatternImage(80, 60, BufferedImage.TYPE_INT_RGB), output, sealed, null));
+
+        Payload read = controller.readPayload(output);
+        assertNotNull(read, "Payload should be read back");
+        assertEquals(sealed.flags(), read.flags(), "Flags should survive embedding");
+        assertArrayEquals(secret, controller.openSecret(read, "sealKey"));
+
+        Payload empty = controller.sealSecret(new byte[0], "sealKey");
+        assertFalse(empty.isCompressed(), "Empty secrets are not worth compressing");
+        assertArrayEquals(new byte[0], controller.openSecret(empty, "sealKey"));
+
+        EncryptionSession session = EncryptionSession.open("sealKey");
+        Payload fromSession = controller.sealSecret(secret, session);
+        assertTrue(fromSession.isCompressed(), "Sessions should compress like single secrets");
+        assertArrayEquals(secret, controller.openSecret(fromSession, session));
+        assertArrayEquals(secret, controller.openSecret(fromSession, "sealKey"));
+    }
+
+    @Test
+    public void testFileStreamsThroughController() throws IOException {
+        Path dir = Files.createTempDirectory("stegocam_stream");
+        Path cover = dir.resolve("cover.png");
+        Path secret = dir.resolve("secret.bin");
+        Path output = dir.resolve("stego.png");
+        Path restored = dir.resolve("restored.bin");
+        byte[] secretBytes = new byte[3000];
+        new Random(5).nextBytes(secretBytes);
+        Files.write(secret, secretBytes);
+        StegoController controller = new StegoController();
+        assertTrue(ImageIO.write(createPatternImage(120, 90, BufferedImage.TYPE_INT_RGB), "png", cover.toFile()));
+
+        assertTrue(controller.embedFile(cover.toString(), secret.toString(), output.toString()));
+        assertTrue(controller.extractToFile(output.toString(), restored.toString()));
+        assertArrayEquals(secretBytes, Files.readAllBytes(restored));
+
+        assertTrue(controller.embedFile(cover.toString(), secret.toString(), output.toString(), "filePassword"));
+        assertTrue(new StegoEngine().readHeader(ImageIO.read(output.toFile())).isEncrypted());
+        assertTrue(controller.extractToFile(output.toString(), restored.toString(), "filePassword"));
+        assertArrayEquals(secretBytes, Files.readAllBytes(restored));
+        assertFalse(controller.extractToFile(output.toString(), restored.toString(), "wrongPassword"));
+        assertFalse(Files.exists(restored), "Failed decryption should not leave output behind");
+
+        assertFalse(controller.extractToFile(cover.toString(), restored.toString()), "Clean covers hold no file");
+        assertFalse(Files.exists(restored), "Failed extraction should not leave output behind");
+    }
+
+    @Test
+    public void testBandedEmbedThroughController() throws IOException {
+        Path dir = Files.createTempDirectory("stegocam_bands");
+        Path cover = dir.resolve("cover.png");
+        byte[] secret = new byte[4000];
+        new Random(31).nextBytes(secret);
+        assertTrue(ImageIO.write(createPatternImage(150, 97, BufferedImage.TYPE_INT_RGB), "png", cover.toFile()));
+
+        StegoController controller = new StegoController();
+        Path viaController = dir.resolve("controller.png");
+        assertTrue(controller.embedPayloadInBands(cover.toString(), viaController.toString(), secret));
+        assertArrayEquals(secret, controller.extractPayload(viaController.toString()));
+        assertFalse(controller.embedPayloadInBands(cover.toString(), viaController.toString(), new byte[20000]),
+            "Oversized payloads should be rejected");
+    }
+
+    private BufferedImage createPatternImage(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = ((x * 7) & 0xFF) << 16 | ((y * 11) & 0xFF) << 8 | ((x * y) & 0xFF);
+                image.setRGB(x, y, 0xFF000000 | rgb);
+            }
+        }
+        return image;
+    }
+}
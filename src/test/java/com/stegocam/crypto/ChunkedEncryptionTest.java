@@ -0,0 +1,89 @@
+package com.stegocam.crypto;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for ChunkedEncryption class
+ */
+public class ChunkedEncryptionTest {
+
+    @Test
+    public void testChunkedPayloadRoundTrips() {
+        byte[] plaintext = new byte[1050];
+        new Random(3).nextBytes(plaintext);
+        for (int length : new int[]{0, 1, 100, 1050}) {
+            byte[] message = Arrays.copyOf(plaintext, length);
+            byte[] encrypted = ChunkedEncryption.encrypt(message, "chunkKey", 100);
+
+            assertEquals((byte) (ChunkedEncryption.FORMAT_GCM_CHUNKED | MessageEncryption.FLAG_KEY_CHECK), encrypted[0]);
+            assertEquals(ChunkedEncryption.encryptedLength(length, 100), encrypted.length);
+            assertArrayEquals(message, ChunkedEncryption.decrypt(encrypted, "chunkKey"));
+            assertArrayEquals(message, MessageEncryption.decryptBytes(encrypted, "chunkKey"),
+                "Binary decryption should recognise chunked payloads");
+        }
+    }
+
+    @Test
+    public void testChunkedPayloadRejectsTamperingReorderingAndTruncation() {
+        byte[] plaintext = new byte[1000];
+        new Random(4).nextBytes(plaintext);
+        byte[] encrypted = ChunkedEncryption.encrypt(plaintext, "chunkKey", 100);
+        int header = ChunkedEncryption.headerLength(encrypted[0]);
+        int sealedChunk = 100 + 16;
+
+        byte[] tampered = encrypted.clone();
+        tampered[header + 3 * sealedChunk + 7] ^= 1;
+        assertThrows(RuntimeException.class, () -> ChunkedEncryption.decrypt(tampered, "chunkKey"));
+
+        byte[] reordered = encrypted.clone();
+        System.arraycopy(encrypted, header, reordered,
+            header + sealedChunk, sealedChunk);
+        System.arraycopy(encrypted, header + sealedChunk, reordered,
+            header, sealedChunk);
+        assertThrows(RuntimeException.class, () -> ChunkedEncryption.decrypt(reordered, "chunkKey"));
+
+        byte[] truncated = Arrays.copyOf(encrypted, encrypted.length - sealedChunk);
+        assertThrows(RuntimeException.class, () -> ChunkedEncryption.decrypt(truncated, "chunkKey"),
+            "Dropping whole chunks should be caught by the final-chunk flag");
+        assertThrows(RuntimeException.class, () -> ChunkedEncryption.decrypt(encrypted, "wrongKey"));
+    }
+
+    @Test
+    public void testChunkedChannelsStreamLargePayloads() throws Exception {
+        byte[] plaintext = new byte[5003];
+        new Random(5).nextBytes(plaintext);
+        ReadableByteChannel encrypting = ChunkedEncryption.encryptingChannel(
+            Channels.newChannel(new ByteArrayInputStream(plaintext)), plaintext.length, "streamKey", 100);
+        ByteArrayOutputStream ciphertext = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(77);
+        while (encrypting.read(buffer.clear()) >= 0) {
+            ciphertext.write(buffer.array(), 0, buffer.position());
+        }
+        byte[] encrypted = ciphertext.toByteArray();
+        assertEquals(ChunkedEncryption.encryptedLength(plaintext.length, 100), encrypted.length);
+        assertArrayEquals(plaintext, ChunkedEncryption.decrypt(encrypted, "streamKey"));
+
+        ByteArrayOutputStream restored = new ByteArrayOutputStream();
+        WritableByteChannel decrypting = ChunkedEncryption.decryptingChannel(Channels.newChannel(restored), "streamKey");
+        for (int offset = 0; offset < encrypted.length; offset += 53) {
+            decrypting.write(ByteBuffer.wrap(encrypted, offset, Math.min(53, encrypted.length - offset)));
+        }
+        decrypting.close();
+        assertArrayEquals(plaintext, restored.toByteArray());
+
+        WritableByteChannel truncated = ChunkedEncryption.decryptingChannel(
+            Channels.newChannel(new ByteArrayOutputStream()), "streamKey");
+        truncated.write(ByteBuffer.wrap(encrypted, 0, encrypted.length - 3 - 16));
+        assertThrows(RuntimeException.class, truncated::close, "A cut-short stream must fail on close");
+    }
+}
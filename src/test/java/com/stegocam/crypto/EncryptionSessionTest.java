@@ -0,0 +1,39 @@
+package com.stegocam.crypto;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Unit tests for EncryptionSession class
+ */
+public class EncryptionSessionTest {
+
+    @Test
+    public void testSessionPayloadsDecryptWithOrWithoutTheSession() {
+        byte[] message = "Sealed once per session".getBytes(StandardCharsets.UTF_8);
+        EncryptionSession session = EncryptionSession.open("sessionKey");
+        byte[] first = session.encrypt(message);
+        byte[] second = session.encrypt(message);
+
+        assertEquals((byte) (EncryptionSession.FORMAT_GCM_SESSION | MessageEncryption.FLAG_KEY_CHECK), first[0]);
+        assertEquals(session.encryptedLength(message.length), first.length);
+        assertFalse(Arrays.equals(first, second), "Each message should get its own IV and key");
+        assertArrayEquals(message, session.decrypt(second));
+        assertArrayEquals(message, MessageEncryption.decryptBytes(first, "sessionKey"));
+        assertArrayEquals(message, EncryptionSession.open("sessionKey").decrypt(first),
+            "Other sessions should fall back to the salt in the payload");
+        assertArrayEquals(message, session.decrypt(MessageEncryption.encryptBytes(message, "sessionKey")),
+            "Sessions should still read single-message payloads");
+
+        assertThrows(RuntimeException.class, () -> MessageEncryption.decryptBytes(first, "wrongKey"));
+        byte[] tampered = first.clone();
+        tampered[1] ^= 1;
+        assertThrows(RuntimeException.class, () -> session.decrypt(tampered));
+
+        session.close();
+        assertThrows(IllegalStateException.class, () -> session.encrypt(message));
+    }
+}
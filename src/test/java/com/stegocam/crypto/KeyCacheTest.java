@@ -0,0 +1,36 @@
+package com.stegocam.crypto;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+
+/**
+ * Unit tests for KeyCache class
+ */
+public class KeyCacheTest {
+
+    @Test
+    public void testKeyCacheIsBoundedAndExpires() {
+        long[] now = {0};
+        KeyCache cache = new KeyCache(2, Duration.ofSeconds(10), () -> now[0]);
+        byte[] salt = {1, 2, 3};
+        cache.put("first", salt, 1000, new byte[]{7});
+
+        assertArrayEquals(new byte[]{7}, cache.get("first", salt, 1000));
+        assertNull(cache.get("first", salt, 2000), "Iteration counts are part of the key");
+        assertNull(cache.get("first", new byte[]{1, 2, 4}, 1000), "Salts are part of the key");
+        assertNull(cache.get("second", salt, 1000), "Passwords are part of the key");
+
+        cache.put("second", salt, 1000, new byte[]{8});
+        cache.get("first", salt, 1000);
+        cache.put("third", salt, 1000, new byte[]{9});
+        assertEquals(2, cache.size());
+        assertNull(cache.get("second", salt, 1000), "The least recently used key should be evicted");
+
+        now[0] = Duration.ofSeconds(10).toNanos();
+        assertNull(cache.get("first", salt, 1000), "Keys should expire");
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
@@ -3,6 +3,21 @@ package com.stegocam.crypto;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Random;
+
 /**
  * Unit tests for MessageEncryption class
  */
@@ -151,4 +166,207 @@ public class MessageEncryptionTest {
         assertEquals(message, MessageEncryption.decrypt(encrypted1, password));
         assertEquals(message, MessageEncryption.decrypt(encrypted2, password));
     }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        byte[] plaintext = new byte[300];
+        for (int i = 0; i < plaintext.length; i++) {
+            plaintext[i] = (byte) i;
+        }
+
+        byte[] encrypted = MessageEncryption.encryptBytes(plaintext, "binaryKey");
+
+        assertEquals((byte) (MessageEncryption.FORMAT_GCM | MessageEncryption.FLAG_KEY_CHECK), encrypted[0]);
+        assertEquals(MessageEncryption.encryptedLength(plaintext.length), encrypted.length);
+        assertArrayEquals(plaintext, MessageEncryption.decryptBytes(encrypted, "binaryKey"));
+    }
+
+    @Test
+    public void testBinaryPayloadIsSmallerThanText() {
+        String message = "The binary payload skips the Base64 expansion entirely.";
+        byte[] binary = MessageEncryption.encryptBytes(message.getBytes(StandardCharsets.UTF_8), "password");
+        String text = MessageEncryption.encrypt(message, "password");
+
+        assertTrue(binary.length < text.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    public void testTamperedBinaryPayloadIsRejected() {
+        byte[] encrypted = MessageEncryption.encryptBytes("integrity".getBytes(StandardCharsets.UTF_8), "password");
+        encrypted[encrypted.length - 1] ^= 1;
+
+        assertThrows(RuntimeException.class, () -> MessageEncryption.decryptBytes(encrypted, "password"));
+    }
+
+    @Test
+    public void testKeyCacheServesRepeatedDecryption() {
+        KeyCache cache = new KeyCache(4, Duration.ofMinutes(1));
+        MessageEncryption.setKeyCache(cache);
+        try {
+            byte[] message = "Cached key".getBytes(StandardCharsets.UTF_8);
+            byte[] encrypted = MessageEncryption.encryptBytes(message, "cacheKey");
+            byte[] chunked = ChunkedEncryption.encrypt(message, "cacheKey", 4);
+            EncryptionSession session = EncryptionSession.open("cacheKey");
+            byte[] fromSession = session.encrypt(message);
+            assertEquals(0, cache.size(), "Encryption uses fresh salts and should add no entries");
+
+            for (byte[] payload : new byte[][]{encrypted, chunked, fromSession}) {
+                assertThrows(RuntimeException.class, () -> MessageEncryption.decryptBytes(payload, "wrongKey"));
+            }
+            assertEquals(0, cache.size(), "Wrong passwords should add no entries");
+
+            assertArrayEquals(message, MessageEncryption.decryptBytes(encrypted, "cacheKey"));
+            assertArrayEquals(message, MessageEncryption.decryptBytes(encrypted, "cacheKey"));
+            assertEquals(1, cache.size(), "Decryption should cache the verified key and then reuse it");
+            assertArrayEquals(message, MessageEncryption.decryptBytes(chunked, "cacheKey"));
+            assertArrayEquals(message, MessageEncryption.decryptBytes(fromSession, "cacheKey"));
+            assertEquals(3, cache.size(), "Every format should cache its verified key");
+        } finally {
+            MessageEncryption.setKeyCache(null);
+        }
+        assertEquals(0, cache.size(), "Removing the cache should clear it");
+    }
+
+    @Test
+    public void testIterationCountTravelsWithThePayload() throws Exception {
+        byte[] message = new byte[450];
+        new Random(6).nextBytes(message);
+        byte[] single;
+        byte[] chunked;
+        byte[] fromSession;
+        MessageEncryption.setIterationCount(20_000);
+        try {
+            single = MessageEncryption.encryptBytes(message, "tunedKey");
+            chunked = ChunkedEncryption.encrypt(message, "tunedKey", 100);
+            fromSession = EncryptionSession.open("tunedKey").encrypt(message);
+        } finally {
+            MessageEncryption.setIterationCount(MessageEncryption.DEFAULT_ITERATIONS);
+        }
+
+        assertEquals((byte) (MessageEncryption.FORMAT_GCM | MessageEncryption.FLAG_ITERATIONS
+            | MessageEncryption.FLAG_KEY_CHECK), single[0]);
+        assertEquals(20_000, ByteBuffer.wrap(single, 1, 4).getInt());
+        assertEquals(MessageEncryption.encryptedLength(message.length) + 4, single.length);
+        assertArrayEquals(message, MessageEncryption.decryptBytes(single, "tunedKey"));
+        assertArrayEquals(message, MessageEncryption.decryptBytes(chunked, "tunedKey"));
+        assertArrayEquals(message, MessageEncryption.decryptBytes(fromSession, "tunedKey"));
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        WritableByteChannel decrypting = ChunkedEncryption.decryptingChannel(Channels.newChannel(streamed), "tunedKey");
+        decrypting.write(ByteBuffer.wrap(chunked));
+        decrypting.close();
+        assertArrayEquals(message, streamed.toByteArray());
+
+        byte[] weakened = single.clone();
+        ByteBuffer.wrap(weakened, 1, 4).putInt(10_000);
+        assertThrows(RuntimeException.class, () -> MessageEncryption.decryptBytes(weakened, "tunedKey"));
+        ByteBuffer.wrap(weakened, 1, 4).putInt(Integer.MAX_VALUE);
+        assertThrows(RuntimeException.class, () -> MessageEncryption.decryptBytes(weakened, "tunedKey"),
+            "Counts beyond the maximum should be refused before deriving anything");
+        assertThrows(IllegalArgumentException.class, () -> MessageEncryption.setIterationCount(1));
+    }
+
+    @Test
+    public void testCalibrationStaysWithinBounds() {
+        int quick = MessageEncryption.calibrateIterations(Duration.ofMillis(1));
+        int slow = MessageEncryption.calibrateIterations(Duration.ofMillis(100));
+
+        assertTrue(quick >= MessageEncryption.MIN_ITERATIONS);
+        assertTrue(slow >= quick, "A larger budget should afford at least as many iterations");
+        assertTrue(slow <= MessageEncryption.MAX_ITERATIONS);
+        assertEquals(0, slow % 1000);
+    }
+
+    @Test
+    public void testWrongPasswordFailsOnTheKeyCheck() throws Exception {
+        byte[] message = new byte[1000];
+        new Random(8).nextBytes(message);
+        byte[] single = MessageEncryption.encryptBytes(message, "rightKey");
+        byte[] chunked = ChunkedEncryption.encrypt(message, "rightKey", 100);
+        byte[] fromSession = EncryptionSession.open("rightKey").encrypt(message);
+
+        for (byte[] payload : new byte[][]{single, chunked, fromSession}) {
+            DecryptionException e = assertThrows(DecryptionException.class,
+                () -> MessageEncryption.decryptBytes(payload, "wrongKey"));
+            assertEquals("Decryption failed: Wrong password", e.getMessage());
+        }
+
+        // The header alone is enough to turn a wrong password away
+        WritableByteChannel decrypting = ChunkedEncryption.decryptingChannel(
+            Channels.newChannel(new ByteArrayOutputStream()), "wrongKey");
+        ByteBuffer header = ByteBuffer.wrap(chunked, 0, ChunkedEncryption.headerLength(chunked[0]));
+        assertThrows(DecryptionException.class, () -> decrypting.write(header));
+    }
+
+    @Test
+    public void testWrongPasswordOnCbcSizedTextReportsTheKeyCheck() {
+        // 15 bytes seal to 48, a length a legacy CBC payload could also have
+        String encrypted = MessageEncryption.encrypt("fifteen bytes!!", "rightKey");
+        assertEquals(48, Base64.getDecoder().decode(encrypted).length);
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> MessageEncryption.decrypt(encrypted, "wrongKey"));
+        assertEquals("Decryption failed: Wrong password", e.getMessage());
+        assertEquals("fifteen bytes!!", MessageEncryption.decrypt(encrypted, "rightKey"));
+    }
+
+    @Test
+    public void testPayloadsWithoutKeyCheckStillDecrypt() throws Exception {
+        byte[] message = "Sealed before key check values".getBytes(StandardCharsets.UTF_8);
+        byte[] iv = new byte[12];
+        new Random(9).nextBytes(iv);
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        byte[] key = factory.generateSecret(new PBEKeySpec("oldKey".toCharArray(), iv, 65536, 256)).getEncoded();
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(128, iv));
+        byte[] ciphertext = cipher.doFinal(message);
+        byte[] payload = ByteBuffer.allocate(1 + iv.length + ciphertext.length)
+            .put(MessageEncryption.FORMAT_GCM).put(iv).put(ciphertext).array();
+
+        assertArrayEquals(message, MessageEncryption.decryptBytes(payload, "oldKey"));
+        assertThrows(RuntimeException.class, () -> MessageEncryption.decryptBytes(payload, "wrongKey"));
+    }
+
+    @Test
+    public void testLegacyCbcMessagesStillDecrypt() throws Exception {
+        String message = "Written by an older StegoCam";
+        String legacy = encryptLegacy(message, "legacyKey");
+
+        assertEquals(message, MessageEncryption.decrypt(legacy, "legacyKey"));
+        byte[] embeddedText = legacy.getBytes(StandardCharsets.UTF_8);
+        assertEquals(message, new String(MessageEncryption.decryptBytes(embeddedText, "legacyKey"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testLegacyIvThatLooksLikeGcmStillDecrypts() throws Exception {
+        String message = "Written by an older StegoCam";
+        // 0x81 reads as a GCM format byte with a key check value
+        String legacy = encryptLegacy(message, "legacyKey", (byte) 0x81);
+
+        assertEquals(message, MessageEncryption.decrypt(legacy, "legacyKey"));
+        assertThrows(RuntimeException.class, () -> MessageEncryption.decrypt(legacy, "wrongKey"));
+    }
+
+    private static String encryptLegacy(String message, String password) throws Exception {
+        return encryptLegacy(message, password, (byte) 0x40);
+    }
+
+    /**
+     * The AES-CBC text format produced before the binary payload existed,
+     * with an IV starting at {@code firstIvByte}.
+     */
+    private static String encryptLegacy(String message, String password, byte firstIvByte) throws Exception {
+        byte[] iv = new byte[16];
+        for (int i = 0; i < iv.length; i++) {
+            iv[i] = (byte) (firstIvByte + i);
+        }
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        byte[] key = factory.generateSecret(new PBEKeySpec(password.toCharArray(), iv, 65536, 256)).getEncoded();
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        byte[] encrypted = cipher.doFinal(message.getBytes(StandardCharsets.UTF_8));
+        byte[] combined = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+        return Base64.getEncoder().encodeToString(combined);
+    }
 }
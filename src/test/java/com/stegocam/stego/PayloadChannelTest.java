@@ -0,0 +1,34 @@
+package com.stegocam.stego;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.zip.CRC32C;
+
+/**
+ * Unit tests for the CRC32C arithmetic behind PayloadChannel writes
+ */
+public class PayloadChannelTest {
+
+    private static final byte[] ZEROS = new byte[1 << 20];
+
+    @Test
+    public void testShiftMatchesAppendedZeros() {
+        for (long tail : new long[]{0, 1, 1000, (1L << 28) + 5, 1L << 29, (1L << 32) + 3}) {
+            CRC32C first = new CRC32C();
+            CRC32C second = new CRC32C();
+            first.update(new byte[]{1, 2, 3});
+            second.update(new byte[]{9, 8, 7});
+            int difference = (int) first.getValue() ^ (int) second.getValue();
+            for (long left = tail; left > 0; left -= ZEROS.length) {
+                int length = (int) Math.min(left, ZEROS.length);
+                first.update(ZEROS, 0, length);
+                second.update(ZEROS, 0, length);
+            }
+
+            int expected = (int) first.getValue() ^ (int) second.getValue();
+            assertEquals(expected, PayloadChannel.multiply(PayloadChannel.shiftByBytes(tail), difference),
+                "Wrong correction for a tail of " + tail + " bytes");
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.stegocam.util;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Unit tests for PayloadCompression class
+ */
+public class PayloadCompressionTest {
+
+    @Test
+    public void testCompressionOnlyKeepsSmallerOutput() {
+        byte[] shortText = "Meet me at the station tomorrow morning, please bring the key.".getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = PayloadCompression.compress(shortText);
+        assertNotNull(compressed, "Short text should shrink against the preset dictionary");
+        assertTrue(compressed.length < shortText.length, compressed.length + " >= " + shortText.length);
+        assertArrayEquals(shortText, PayloadCompression.decompress(compressed, shortText.length));
+
+        byte[] longText = "The quick brown fox jumps over the lazy dog. ".repeat(200).getBytes(StandardCharsets.UTF_8);
+        byte[] longCompressed = PayloadCompression.compress(longText, 9);
+        assertTrue(longCompressed.length < longText.length / 10, "Repetitive text should compress well");
+        assertArrayEquals(longText, PayloadCompression.decompress(longCompressed, longText.length));
+        assertThrows(IllegalArgumentException.class, () -> PayloadCompression.decompress(longCompressed, 1000),
+            "Output beyond the limit should be refused");
+
+        byte[] noise = new byte[500];
+        new Random(7).nextBytes(noise);
+        assertNull(PayloadCompression.compress(noise), "Incompressible data should be left alone");
+    }
+}
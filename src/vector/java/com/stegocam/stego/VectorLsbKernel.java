@@ -0,0 +1,112 @@
+package com.stegocam.stego;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD variant of the 1, 2 and 4 bit kernels built on
+ * {@code jdk.incubator.vector}. Each step splices {@code lanes / samplesPerByte}
+ * payload bytes into a full vector of channel samples: the payload bytes are
+ * fanned out so every lane holds its source byte, shifted into place, masked
+ * and merged with the cleared samples. Extraction reverses this by shifting
+ * each sample's bits into position and OR-folding the lanes of each byte.
+ * <p>
+ * Only compiled with the {@code vector} Maven profile and loaded reflectively
+ * by {@link LsbKernel#forDepth}; the bit layout matches the scalar kernels.
+ */
+final class VectorLsbKernel extends LsbKernel {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int MIN_LANES = 16;
+
+    private final int samplesPerByte;
+    private final int bytesPerStep;
+    private final byte lowMask;
+    private final VectorShuffle<Byte> fanOut;
+    private final ByteVector shifts;
+    // Kernels are shared by every engine thread, so each keeps its own staging buffer
+    private final ThreadLocal<byte[]> scratch;
+
+    VectorLsbKernel(int lsbBits) {
+        super(lsbBits);
+        if (lsbBits != 1 && lsbBits != 2 && lsbBits != 4) {
+            throw new IllegalArgumentException("Vector kernel only supports 1, 2 or 4 LSB bits.");
+        }
+        if (SPECIES.length() < MIN_LANES) {
+            throw new UnsupportedOperationException("Preferred vector shape is too narrow: " + SPECIES.length() + " lanes.");
+        }
+        this.samplesPerByte = 8 / lsbBits;
+        this.bytesPerStep = SPECIES.length() / samplesPerByte;
+        this.lowMask = (byte) ((1 << lsbBits) - 1);
+        this.fanOut = VectorShuffle.fromOp(SPECIES, lane -> lane / samplesPerByte);
+        byte[] laneShifts = new byte[SPECIES.length()];
+        for (int lane = 0; lane < laneShifts.length; lane++) {
+            laneShifts[lane] = (byte) ((samplesPerByte - 1 - lane % samplesPerByte) * lsbBits);
+        }
+        this.shifts = ByteVector.fromArray(SPECIES, laneShifts, 0);
+        this.scratch = ThreadLocal.withInitial(() -> new byte[SPECIES.length()]);
+    }
+
+    @Override
+    void embed(byte[] samples, int sampleCount, BitReader bits) {
+        int lanes = SPECIES.length();
+        byte[] payload = scratch.get();
+        int sample = 0;
+        while (sample + lanes <= sampleCount && bits.remainingBits() >= bytesPerStep * 8L) {
+            bits.readBytes(payload, 0, bytesPerStep);
+            ByteVector spread = ByteVector.fromArray(SPECIES, payload, 0)
+                .rearrange(fanOut)
+                .lanewise(VectorOperators.LSHR, shifts)
+                .and(lowMask);
+            ByteVector.fromArray(SPECIES, samples, sample)
+                .and((byte) ~lowMask)
+                .or(spread)
+                .intoArray(samples, sample);
+            sample += lanes;
+        }
+        embedBitwise(samples, sample, sampleCount, bits);
+    }
+
+    @Override
+    void extract(byte[] samples, int sampleCount, BitWriter bits) {
+        int lanes = SPECIES.length();
+        byte[] payload = scratch.get();
+        int sample = 0;
+        while (sample + lanes <= sampleCount && bits.remainingBits() >= bytesPerStep * 8L) {
+            ByteVector positioned = ByteVector.fromArray(SPECIES, samples, sample)
+                .and(lowMask)
+                .lanewise(VectorOperators.LSHL, shifts);
+            fold(positioned).intoArray(payload, 0);
+            bits.writeBytes(payload, 0, bytesPerStep);
+            sample += lanes;
+        }
+        extractBitwise(samples, sample, sampleCount, bits);
+    }
+
+    /**
+     * OR together the {@code samplesPerByte} lanes that make up each payload
+     * byte, leaving the results packed in the low lanes.
+     */
+    private ByteVector fold(ByteVector positioned) {
+        return switch (samplesPerByte) {
+            case 2 -> (ByteVector) positioned.reinterpretAsShorts()
+                .lanewise(VectorOperators.OR, positioned.reinterpretAsShorts().lanewise(VectorOperators.LSHR, 8))
+                .convert(VectorOperators.S2B, 0);
+            case 4 -> {
+                var ints = positioned.reinterpretAsInts();
+                ints = ints.or(ints.lanewise(VectorOperators.LSHR, 16));
+                ints = ints.or(ints.lanewise(VectorOperators.LSHR, 8));
+                yield (ByteVector) ints.convert(VectorOperators.I2B, 0);
+            }
+            default -> {
+                var longs = positioned.reinterpretAsLongs();
+                longs = longs.or(longs.lanewise(VectorOperators.LSHR, 32));
+                longs = longs.or(longs.lanewise(VectorOperators.LSHR, 16));
+                longs = longs.or(longs.lanewise(VectorOperators.LSHR, 8));
+                yield (ByteVector) longs.convert(VectorOperators.L2B, 0);
+            }
+        };
+    }
+}